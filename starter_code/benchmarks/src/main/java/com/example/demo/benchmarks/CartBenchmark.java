@@ -0,0 +1,76 @@
+package com.example.demo.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Item;
+
+// Cart mutations as performed by CartController for a given requested quantity
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartBenchmark {
+
+	@Param({ "1", "10", "100", "1000" })
+	private int quantity;
+
+	private Item item;
+
+	@Setup
+	public void setUp() {
+		item = Fixtures.item(1L);
+	}
+
+	// One addItem call per unit
+	@Benchmark
+	public Cart addItemLoop() {
+		Cart cart = new Cart();
+		for (int i = 0; i < quantity; i++) {
+			cart.addItem(item);
+		}
+		return cart;
+	}
+
+	// One call for the whole quantity
+	@Benchmark
+	public Cart addItemQuantity() {
+		Cart cart = new Cart();
+		cart.addItem(item, quantity);
+		return cart;
+	}
+
+	// Fill the cart, then empty it again one removeItem call per unit
+	@Benchmark
+	public Cart addThenRemoveLoop() {
+		Cart cart = new Cart();
+		cart.addItem(item, quantity);
+		for (int i = 0; i < quantity; i++) {
+			cart.removeItem(item);
+		}
+		return cart;
+	}
+
+	// Fill the cart, then empty it again with a single call
+	@Benchmark
+	public Cart addThenRemoveQuantity() {
+		Cart cart = new Cart();
+		cart.addItem(item, quantity);
+		cart.removeItem(item, quantity);
+		return cart;
+	}
+}
@@ -0,0 +1,44 @@
+package com.example.demo.benchmarks;
+
+import java.math.BigDecimal;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.User;
+
+// Builds the detached entities the benchmarks work on, shaped like the rows seeded by db/migration/V2__seed_items.sql
+final class Fixtures {
+
+	private Fixtures() {
+	}
+
+	static Item item(long id) {
+		Item item = new Item();
+		item.setId(id);
+		item.setName("Widget " + id);
+		item.setPrice(new BigDecimal("6.99"));
+		item.setDescription("A widget that is round");
+		return item;
+	}
+
+	static User user() {
+		User user = new User();
+		user.setId(1L);
+		user.setUsername("benchmark");
+		user.setPassword("$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z5Wz3YDzX1j4ZrCjWxRvY2aK");
+		return user;
+	}
+
+	// A cart owned by user() holding `distinctItems` lines of `quantity` units each
+	static Cart cart(int distinctItems, int quantity) {
+		User user = user();
+		Cart cart = new Cart();
+		cart.setId(1L);
+		cart.setUser(user);
+		user.setCart(cart);
+		for (int i = 1; i <= distinctItems; i++) {
+			cart.addItem(item(i), quantity);
+		}
+		return cart;
+	}
+}
@@ -0,0 +1,86 @@
+package com.example.demo.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.responses.CartView;
+import com.example.demo.model.responses.OrderView;
+import com.example.demo.service.JsonMapping;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+
+// Jackson serialization of the response bodies of the cart, order and item endpoints, through the writers JsonMapping
+// pre-resolves, with and without the Afterburner module of jackson.afterburner.enabled
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+	@Param({ "1", "10", "100" })
+	private int distinctItems;
+
+	@Param({ "false", "true" })
+	private boolean afterburner;
+
+	private CartView cart;
+
+	private OrderView order;
+
+	private Item item;
+
+	private ObjectWriter cartWriter;
+
+	private ObjectWriter orderWriter;
+
+	private ObjectWriter itemWriter;
+
+	@Setup
+	public void setUp() {
+		Cart fixture = Fixtures.cart(distinctItems, 3);
+		cart = CartView.of(fixture);
+		order = OrderView.of(UserOrder.createFromCart(fixture));
+		item = Fixtures.item(1);
+		ObjectMapper objectMapper = new ObjectMapper();
+		if (afterburner) {
+			objectMapper.registerModule(new AfterburnerModule());
+		}
+		JsonMapping jsonMapping = new JsonMapping(objectMapper);
+		cartWriter = jsonMapping.writerFor(CartView.class);
+		orderWriter = jsonMapping.writerFor(OrderView.class);
+		itemWriter = jsonMapping.writerFor(Item.class);
+	}
+
+	@Benchmark
+	public byte[] serializeCart() throws JsonProcessingException {
+		return cartWriter.writeValueAsBytes(cart);
+	}
+
+	@Benchmark
+	public byte[] serializeOrder() throws JsonProcessingException {
+		return orderWriter.writeValueAsBytes(order);
+	}
+
+	@Benchmark
+	public byte[] serializeItem() throws JsonProcessingException {
+		return itemWriter.writeValueAsBytes(item);
+	}
+}
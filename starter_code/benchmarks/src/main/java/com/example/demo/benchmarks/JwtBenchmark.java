@@ -0,0 +1,72 @@
+package com.example.demo.benchmarks;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.example.demo.security.VerifiedTokenCache;
+
+import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+import static com.example.demo.util.Constant.CART_ID_CLAIM;
+import static com.example.demo.util.Constant.EXPIRATION_TIME;
+import static com.example.demo.util.Constant.SECRET;
+import static com.example.demo.util.Constant.USER_ID_CLAIM;
+
+// Token signing on login and token verification on every authenticated request
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+	private String token;
+
+	private VerifiedTokenCache verifiedTokenCache;
+
+	@Setup
+	public void setUp() {
+		token = sign();
+		verifiedTokenCache = new VerifiedTokenCache(10_000);
+		verifiedTokenCache.verify(token);
+	}
+
+	// Same calls as JWTAuthenticationFilter.successfulAuthentication, for a user with a cart
+	@Benchmark
+	public String sign() {
+		return JWT.create()
+				.withSubject("benchmark")
+				.withExpiresAt(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
+				.withClaim(USER_ID_CLAIM, 1L)
+				.withClaim(CART_ID_CLAIM, 1L)
+				.sign(HMAC512(SECRET.getBytes()));
+	}
+
+	// A full verification with a freshly built verifier, as done before tokens were cached
+	@Benchmark
+	public String verifyUncached() {
+		return JWT.require(Algorithm.HMAC512(SECRET.getBytes()))
+				.build()
+				.verify(token)
+				.getSubject();
+	}
+
+	// The path JWTAuthenticationVerificationFilter takes for a token it has already verified
+	@Benchmark
+	public String verifyCached() {
+		return verifiedTokenCache.verify(token).getSubject();
+	}
+}
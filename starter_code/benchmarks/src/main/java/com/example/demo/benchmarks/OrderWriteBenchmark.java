@@ -0,0 +1,147 @@
+package com.example.demo.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.H2Dialect;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.UserOrder;
+
+// Writing orders to an in-memory H2 database through Hibernate, with the entity mappings of the application:
+// one transaction per order, as done by OrderController.submit, against one transaction for all of them with a
+// flush and clear every jdbcBatchSize orders, as done by OrderSubmissionService.submitAll. The primary score is
+// orders per second; the "rows" secondary score counts the order rows plus their line rows, per second.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderWriteBenchmark {
+
+	private static final int ORDERS = 500;
+
+	// 1 turns JDBC batching off
+	@Param({ "1", "50" })
+	private int jdbcBatchSize;
+
+	@Param({ "3" })
+	private int distinctItems;
+
+	private SessionFactory sessionFactory;
+
+	// Detached carts of persisted users, submitted ORDERS at a time
+	private List<Cart> carts;
+
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Rows {
+		public long rows;
+	}
+
+	@Setup
+	public void setUp() {
+		StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+				.applySetting(AvailableSettings.URL, "jdbc:h2:mem:orders;DB_CLOSE_DELAY=-1")
+				.applySetting(AvailableSettings.USER, "sa")
+				.applySetting(AvailableSettings.PASS, "")
+				.applySetting(AvailableSettings.DIALECT, H2Dialect.class.getName())
+				.applySetting(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+				.applySetting(AvailableSettings.PREFERRED_POOLED_OPTIMIZER, "pooled-lo")
+				.applySetting(AvailableSettings.STATEMENT_BATCH_SIZE, jdbcBatchSize)
+				.applySetting(AvailableSettings.ORDER_INSERTS, true)
+				.build();
+		sessionFactory = new MetadataSources(registry)
+				.addAnnotatedClass(User.class)
+				.addAnnotatedClass(Cart.class)
+				.addAnnotatedClass(UserOrder.class)
+				.buildMetadata()
+				.buildSessionFactory();
+
+		carts = new ArrayList<>(ORDERS);
+		try (Session session = sessionFactory.openSession()) {
+			session.beginTransaction();
+			for (int i = 0; i < ORDERS; i++) {
+				Cart cart = Fixtures.cart(distinctItems, 3);
+				User user = cart.getUser();
+				user.setId(0L);
+				user.setUsername("benchmark" + i);
+				cart.setId(null);
+				session.persist(user);
+				carts.add(cart);
+			}
+			session.getTransaction().commit();
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		sessionFactory.close();
+	}
+
+	// Keep the order tables from growing across iterations
+	@TearDown(Level.Iteration)
+	public void deleteOrders() {
+		try (Session session = sessionFactory.openSession()) {
+			session.beginTransaction();
+			session.createNativeQuery("delete from user_order_line").executeUpdate();
+			session.createNativeQuery("delete from user_order").executeUpdate();
+			session.getTransaction().commit();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ORDERS)
+	public void transactionPerOrder(Rows rows) {
+		for (Cart cart : carts) {
+			try (Session session = sessionFactory.openSession()) {
+				session.beginTransaction();
+				session.persist(UserOrder.createFromCart(cart));
+				session.getTransaction().commit();
+			}
+			rows.rows += 1 + cart.getLines().size();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ORDERS)
+	public void batchedSubmit(Rows rows) {
+		try (Session session = sessionFactory.openSession()) {
+			session.beginTransaction();
+			for (int i = 0; i < carts.size(); i++) {
+				Cart cart = carts.get(i);
+				session.persist(UserOrder.createFromCart(cart));
+				rows.rows += 1 + cart.getLines().size();
+				if ((i + 1) % jdbcBatchSize == 0) {
+					session.flush();
+					session.clear();
+				}
+			}
+			session.getTransaction().commit();
+		}
+	}
+}
@@ -0,0 +1,373 @@
+package com.example.demo.load;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import com.example.demo.service.DataSeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Replays a workload against a running application through its HTTP API, from many threads at once. The latency of
+// every request is recorded per operation; the report gives the throughput and latency percentiles of each
+// operation, measured after the warm-up. Two workloads are available:
+// - sessions (the default): each thread plays one user session after another: log in as a random seeded user,
+//   browse (search the catalog for a word of the seeded item names, then open one of the hits), add some of the
+//   browsed items to the cart and sometimes submit the cart as an order.
+// - controllers: each thread logs in once, then calls one endpoint of each of the four controllers in turn for the
+//   rest of the run: the user by username, an item by id, adding an item to the cart and removing it again (so the
+//   cart keeps its size), and the first page of the order history. Without the BCrypt work of the logins, this
+//   measures how many concurrent requests the server handles, e.g. with and without virtual threads.
+//
+// Seed the application first, e.g. with --spring.profiles.active=persistent,seed, then run from this module:
+//   mvn package exec:exec@load -Dload.args="--threads=32 --duration=60"
+// Options (--name=value): workload, url, threads, duration and warmup (seconds), users, username-prefix and
+// password (as seeded), browse (searches per session), adds (cart additions per session), submit-ratio (share of
+// sessions ending with an order), report-interval (seconds) and timeout (milliseconds).
+public final class LoadDriver {
+
+	private static final String[] SESSION_OPERATIONS = { "login", "search", "item", "addToCart", "submit" };
+	private static final String[] CONTROLLER_OPERATIONS = { "login", "user", "item", "cart", "order" };
+
+	// Highest latency the histograms can record, in microseconds
+	private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final boolean controllers;
+	private final String[] operations;
+	private final String url;
+	private final int threads;
+	private final long durationSeconds;
+	private final long warmupSeconds;
+	private final int users;
+	private final String usernamePrefix;
+	private final String password;
+	private final int browse;
+	private final int adds;
+	private final double submitRatio;
+	private final long reportIntervalSeconds;
+	private final int timeoutMillis;
+
+	private final Map<String, Recorder> recorders = new LinkedHashMap<>();
+	private final Map<String, Histogram> totals = new LinkedHashMap<>();
+	private final Map<String, Map<String, LongAdder>> errors = new LinkedHashMap<>();
+
+	private volatile boolean measuring;
+	private volatile boolean running = true;
+
+	private LoadDriver(Map<String, String> options) {
+		String workload = option(options, "workload", "sessions");
+		if (!workload.equals("sessions") && !workload.equals("controllers")) {
+			throw new IllegalArgumentException("Unknown workload " + workload);
+		}
+		controllers = workload.equals("controllers");
+		operations = controllers ? CONTROLLER_OPERATIONS : SESSION_OPERATIONS;
+		url = option(options, "url", "http://localhost:8080");
+		threads = Integer.parseInt(option(options, "threads", "16"));
+		durationSeconds = Long.parseLong(option(options, "duration", "60"));
+		warmupSeconds = Long.parseLong(option(options, "warmup", "10"));
+		users = Integer.parseInt(option(options, "users", "100000"));
+		usernamePrefix = option(options, "username-prefix", "user");
+		password = option(options, "password", "password");
+		browse = Integer.parseInt(option(options, "browse", "3"));
+		adds = Integer.parseInt(option(options, "adds", "2"));
+		submitRatio = Double.parseDouble(option(options, "submit-ratio", "0.3"));
+		reportIntervalSeconds = Long.parseLong(option(options, "report-interval", "10"));
+		timeoutMillis = Integer.parseInt(option(options, "timeout", "10000"));
+		if (!options.isEmpty()) {
+			throw new IllegalArgumentException("Unknown options " + options.keySet());
+		}
+		// Keep a connection alive per thread instead of the default of 5 per server
+		System.setProperty("http.maxConnections", Integer.toString(threads));
+		for (String operation : operations) {
+			recorders.put(operation, new Recorder(MAX_LATENCY_MICROS, 3));
+			totals.put(operation, new Histogram(MAX_LATENCY_MICROS, 3));
+			errors.put(operation, new ConcurrentHashMap<>());
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			if (!arg.startsWith("--") || !arg.contains("=")) {
+				throw new IllegalArgumentException("Expected --name=value but got " + arg);
+			}
+			options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+		}
+		new LoadDriver(options).run();
+	}
+
+	private void run() throws InterruptedException {
+		System.out.printf("Driving %s with %d threads (%s): %d s of warm-up, then %d s measured%n", url, threads,
+				controllers ? "controllers" : "sessions", warmupSeconds, durationSeconds);
+		List<Thread> workers = new ArrayList<>(threads);
+		for (int i = 0; i < threads; i++) {
+			Thread worker = new Thread(controllers ? this::controllers : this::sessions, "load-" + i);
+			worker.setDaemon(true);
+			worker.start();
+			workers.add(worker);
+		}
+
+		TimeUnit.SECONDS.sleep(warmupSeconds);
+		// Throw away what was recorded during the warm-up
+		intervalCounts(false);
+		for (Map<String, LongAdder> operationErrors : errors.values()) {
+			operationErrors.clear();
+		}
+		measuring = true;
+
+		long start = System.nanoTime();
+		long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+		long intervalStart = start;
+		while (System.nanoTime() < end) {
+			long sleep = Math.min(TimeUnit.SECONDS.toNanos(reportIntervalSeconds), end - System.nanoTime());
+			TimeUnit.NANOSECONDS.sleep(Math.max(0, sleep));
+			long now = System.nanoTime();
+			Map<String, Long> counts = intervalCounts(true);
+			double seconds = (now - intervalStart) / 1e9;
+			StringBuilder line = new StringBuilder(String.format("%6.0f s", (now - start) / 1e9));
+			counts.forEach((operation, count) -> line.append(String.format("  %s %.0f/s", operation, count / seconds)));
+			System.out.println(line);
+			intervalStart = now;
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		measuring = false;
+		running = false;
+		for (Thread worker : workers) {
+			worker.join(timeoutMillis);
+		}
+		report(seconds);
+	}
+
+	// One user session after another until the run is over
+	private void sessions() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int failedLogins = 0;
+		while (running) {
+			String username = usernamePrefix + random.nextInt(users);
+			String token = login(username);
+			if (token == null) {
+				backOff(random, ++failedLogins);
+				continue;
+			}
+			failedLogins = 0;
+			List<Long> browsed = new ArrayList<>();
+			for (int i = 0; i < browse && running; i++) {
+				String term = DataSeeder.NOUNS.get(random.nextInt(DataSeeder.NOUNS.size()));
+				JsonNode hits = call("search", "GET", "/api/item/search?q=" + encode(term), token, null);
+				if (hits != null && hits.size() > 0) {
+					long itemId = hits.get(random.nextInt(hits.size())).get("id").asLong();
+					if (call("item", "GET", "/api/item/" + itemId, token, null) != null) {
+						browsed.add(itemId);
+					}
+				}
+			}
+			for (int i = 0; i < adds && !browsed.isEmpty() && running; i++) {
+				Map<String, Object> request = new HashMap<>();
+				request.put("username", username);
+				request.put("itemId", browsed.get(random.nextInt(browsed.size())));
+				request.put("quantity", 1 + random.nextInt(3));
+				call("addToCart", "POST", "/api/cart/addToCart", token, request);
+			}
+			if (running && random.nextDouble() < submitRatio) {
+				call("submit", "POST", "/api/order/submit/" + encode(username), token, null);
+			}
+		}
+	}
+
+	// One user, logged in once, calling each controller in turn until the run is over
+	private void controllers() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		String username = usernamePrefix + random.nextInt(users);
+		String token = login(username);
+		for (int failures = 1; running && token == null; failures++) {
+			backOff(random, failures);
+			token = login(username);
+		}
+		List<Long> itemIds = new ArrayList<>();
+		for (int failures = 1; running && itemIds.isEmpty(); failures++) {
+			String term = DataSeeder.NOUNS.get(random.nextInt(DataSeeder.NOUNS.size()));
+			JsonNode hits = call("item", "GET", "/api/item/search?q=" + encode(term) + "&limit=100", token, null);
+			for (int i = 0; hits != null && i < hits.size(); i++) {
+				itemIds.add(hits.get(i).get("id").asLong());
+			}
+			if (itemIds.isEmpty()) {
+				backOff(random, failures);
+			}
+		}
+		Map<String, Object> request = new HashMap<>();
+		request.put("username", username);
+		request.put("quantity", 1);
+		while (running) {
+			long itemId = itemIds.get(random.nextInt(itemIds.size()));
+			call("user", "GET", "/api/user/" + encode(username), token, null);
+			call("item", "GET", "/api/item/" + itemId, token, null);
+			request.put("itemId", itemId);
+			call("cart", "POST", "/api/cart/addToCart", token, request);
+			call("cart", "POST", "/api/cart/removeFromCart", token, request);
+			call("order", "GET", "/api/order/history/" + encode(username) + "?size=10", token, null);
+		}
+	}
+
+	// Returns the Authorization header value for the user, or null when the login failed
+	private String login(String username) {
+		Map<String, Object> credentials = new HashMap<>();
+		credentials.put("username", username);
+		credentials.put("password", password);
+		long start = System.nanoTime();
+		try {
+			HttpURLConnection connection = send("POST", "/login", null, credentials);
+			int status = connection.getResponseCode();
+			drain(connection);
+			record("login", start, status);
+			return status == HttpURLConnection.HTTP_OK ? connection.getHeaderField("Authorization") : null;
+		} catch (IOException e) {
+			failed("login", e);
+			return null;
+		}
+	}
+
+	// Sends the request and returns the parsed response body, or null when it did not succeed
+	private JsonNode call(String operation, String method, String path, String token, Object body) {
+		long start = System.nanoTime();
+		try {
+			HttpURLConnection connection = send(method, path, token, body);
+			int status = connection.getResponseCode();
+			byte[] response = drain(connection);
+			record(operation, start, status);
+			if (status / 100 != 2) {
+				return null;
+			}
+			return response.length == 0 ? objectMapper.nullNode() : objectMapper.readTree(response);
+		} catch (IOException e) {
+			failed(operation, e);
+			return null;
+		}
+	}
+
+	private HttpURLConnection send(String method, String path, String token, Object body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url + path).openConnection();
+		connection.setRequestMethod(method);
+		connection.setConnectTimeout(timeoutMillis);
+		connection.setReadTimeout(timeoutMillis);
+		if (token != null) {
+			connection.setRequestProperty("Authorization", token);
+		}
+		if (body != null) {
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/json");
+			try (OutputStream out = connection.getOutputStream()) {
+				objectMapper.writeValue(out, body);
+			}
+		} else if ("POST".equals(method)) {
+			connection.setFixedLengthStreamingMode(0);
+			connection.setDoOutput(true);
+		}
+		return connection;
+	}
+
+	// Reads the whole response, which lets the connection be reused for the next request
+	private static byte[] drain(HttpURLConnection connection) throws IOException {
+		InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		if (in != null) {
+			try (InputStream stream = in) {
+				byte[] buffer = new byte[8192];
+				for (int read; (read = stream.read(buffer)) != -1; ) {
+					body.write(buffer, 0, read);
+				}
+			}
+		}
+		return body.toByteArray();
+	}
+
+	private void record(String operation, long start, int status) {
+		recorders.get(operation).recordValue(Math.min(MAX_LATENCY_MICROS,
+				TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start)));
+		if (status / 100 != 2 && measuring) {
+			errors.get(operation).computeIfAbsent(Integer.toString(status), key -> new LongAdder()).increment();
+		}
+	}
+
+	private void failed(String operation, IOException e) {
+		if (measuring) {
+			errors.get(operation).computeIfAbsent(e.getClass().getSimpleName(), key -> new LongAdder()).increment();
+		}
+	}
+
+	// Requests recorded per operation since the last call, added to the totals when keep is set
+	private Map<String, Long> intervalCounts(boolean keep) {
+		Map<String, Long> counts = new LinkedHashMap<>();
+		for (String operation : operations) {
+			Histogram interval = recorders.get(operation).getIntervalHistogram();
+			if (keep) {
+				totals.get(operation).add(interval);
+			}
+			counts.put(operation, interval.getTotalCount());
+		}
+		return counts;
+	}
+
+	private void report(double seconds) {
+		intervalCounts(true);
+		System.out.printf("%n%-10s %10s %10s %9s %9s %9s %9s %9s %9s  %s%n", "operation", "requests", "req/s",
+				"mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+		long requests = 0;
+		for (String operation : operations) {
+			Histogram histogram = totals.get(operation);
+			requests += histogram.getTotalCount();
+			Map<String, Long> operationErrors = new LinkedHashMap<>();
+			errors.get(operation).forEach((cause, count) -> operationErrors.put(cause, count.sum()));
+			System.out.printf("%-10s %10d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n", operation,
+					histogram.getTotalCount(), histogram.getTotalCount() / seconds, histogram.getMean() / 1000,
+					millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+					histogram.getMaxValue() / 1000.0, operationErrors.isEmpty() ? "-" : operationErrors);
+		}
+		System.out.printf("%-10s %10d %10.1f%n", "total", requests, requests / seconds);
+	}
+
+	// Waits before retrying after the given number of consecutive failures: a random time up to 100 ms, doubled on
+	// every failure up to 6.4 s, so an overloaded server (e.g. answering 503 to logins) is not hammered in a loop
+	private static void backOff(ThreadLocalRandom random, int failures) {
+		try {
+			TimeUnit.MILLISECONDS.sleep(random.nextLong(1, 100L << Math.min(failures - 1, 6)));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static double millis(Histogram histogram, double percentile) {
+		return histogram.getValueAtPercentile(percentile) / 1000.0;
+	}
+
+	private static String option(Map<String, String> options, String name, String defaultValue) {
+		String value = options.remove(name);
+		return value != null ? value : defaultValue;
+	}
+
+	private static String encode(String value) {
+		try {
+			return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
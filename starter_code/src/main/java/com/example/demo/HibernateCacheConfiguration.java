@@ -0,0 +1,54 @@
+package com.example.demo;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Regions of Hibernate's second-level cache, held in an Ehcache manager that is handed to Hibernate. Every region
+// is bounded by entry count and evicts its least recently used entries when full; Hibernate refuses to start if
+// an entity or query needs a region that is not created here (hibernate.javax.cache.missing_cache_strategy=fail).
+@Configuration
+public class HibernateCacheConfiguration {
+
+	// Last write time of each table, which discards stale query results: one entry per table, never to be evicted
+	private static final long UPDATE_TIMESTAMPS_SIZE = 1000;
+
+	@Bean
+	public CacheManager hibernateCacheManager(@Value("${hibernate.cache.item.max-size:10000}") long itemSize,
+			@Value("${hibernate.cache.user.max-size:10000}") long userSize,
+			@Value("${hibernate.cache.query.max-size:1000}") long querySize) {
+		CacheManager cacheManager = Caching.getCachingProvider(EhcacheCachingProvider.class.getName())
+				.getCacheManager();
+		// Item entities by id
+		createRegion(cacheManager, "item", itemSize);
+		// User entities by id, and user ids by username
+		createRegion(cacheManager, "user", userSize);
+		createRegion(cacheManager, "userNaturalId", userSize);
+		// Ids returned by the cacheable queries, per query and parameters
+		createRegion(cacheManager, "default-query-results-region", querySize);
+		createRegion(cacheManager, "default-update-timestamps-region", UPDATE_TIMESTAMPS_SIZE);
+		return cacheManager;
+	}
+
+	@Bean
+	public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+		return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+	}
+
+	private static void createRegion(CacheManager cacheManager, String region, long maxSize) {
+		if (cacheManager.getCache(region) == null) {
+			cacheManager.createCache(region, Eh107Configuration.fromEhcacheCacheConfiguration(
+					CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+							ResourcePoolsBuilder.heap(maxSize))));
+		}
+	}
+}
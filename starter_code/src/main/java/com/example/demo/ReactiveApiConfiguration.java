@@ -0,0 +1,61 @@
+package com.example.demo;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+import java.util.Collections;
+
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.ServletHttpHandlerAdapter;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.example.demo.controllers.ReactiveReadHandler;
+import com.example.demo.util.Constant;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Reactive read API next to the Spring MVC one: WebFlux functional routes served by their own servlet under /rx,
+// in the same Tomcat and behind the same security filters. The servlet adapter uses Servlet 3.1 non-blocking I/O,
+// so a request holds no Tomcat thread while it waits for the client to read or for the next page of rows, and a
+// few threads can serve thousands of slow readers.
+@Configuration
+public class ReactiveApiConfiguration {
+
+	public static final String PATH = "/rx";
+
+	// Routes of the servlet mapped to PATH. The route predicates of this Spring version match the whole request path,
+	// context and servlet path included, so they repeat the PATH prefix.
+	public static RouterFunction<ServerResponse> routes(ReactiveReadHandler handler) {
+		return route(GET(PATH + "/item"), handler::items)
+				.andRoute(GET(PATH + "/order/history/{username}"), handler::orderHistory);
+	}
+
+	// Jackson codecs of the application's ObjectMapper, writing NDJSON bodies one element per line
+	public static HandlerStrategies handlerStrategies(ObjectMapper objectMapper) {
+		MediaType ndjson = MediaType.parseMediaType(Constant.NDJSON_MEDIA_TYPE);
+		Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(objectMapper, MediaType.APPLICATION_JSON, ndjson);
+		encoder.setStreamingMediaTypes(Collections.singletonList(ndjson));
+		return HandlerStrategies.builder()
+				.codecs(codecs -> codecs.defaultCodecs().jackson2JsonEncoder(encoder))
+				.build();
+	}
+
+	@Bean
+	public ServletRegistrationBean<ServletHttpHandlerAdapter> reactiveApiServlet(ReactiveReadHandler handler,
+			ObjectMapper objectMapper) {
+		ServletHttpHandlerAdapter servlet = new ServletHttpHandlerAdapter(
+				RouterFunctions.toHttpHandler(routes(handler), handlerStrategies(objectMapper)));
+		ServletRegistrationBean<ServletHttpHandlerAdapter> registration =
+				new ServletRegistrationBean<>(servlet, PATH + "/*");
+		registration.setName("reactiveApi");
+		registration.setAsyncSupported(true);
+		registration.setLoadOnStartup(1);
+		return registration;
+	}
+}
@@ -0,0 +1,95 @@
+package com.example.demo;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.catalina.util.ServerInfo;
+import org.apache.coyote.AbstractProtocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.demo.service.VirtualThreadPinningDetector;
+
+// Opt-in mode, spring.threads.virtual.enabled=true, in which Tomcat runs every request on a new virtual thread
+// instead of its fixed pool of server.tomcat.max-threads platform threads. The controllers, the repositories and
+// the JDBC calls under them run on the request thread, so a request blocked on the database only parks its virtual
+// thread. BCrypt work stays on the platform threads of PasswordHashingService, since it is CPU bound.
+// The mode needs Java 24 or newer, and the application fails to start with it on an older JDK. Tomcat 9.0.19's
+// SocketProcessorBase.run() processes each request inside synchronized (socketWrapper), and before Java 24 (JEP 491)
+// a virtual thread blocking inside a monitor pins its carrier: on Java 21 to 23 every request would hold one of the
+// (one per CPU) carriers for its whole duration, JDBC waits included. The application is built for Java 8, so the
+// virtual threads are created reflectively.
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfiguration implements DisposableBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(VirtualThreadConfiguration.class);
+
+	// Virtual threads stop pinning their carrier when blocking in synchronized code from this version on
+	static final int UNPINNED_MONITORS_JAVA_VERSION = 24;
+
+	private final ExecutorService executor;
+
+	public VirtualThreadConfiguration() {
+		requireUnpinnedMonitors(System.getProperty("java.specification.version"));
+		executor = newVirtualThreadPerTaskExecutor("http-virtual-");
+	}
+
+	@Bean
+	public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadTomcatCustomizer() {
+		return factory -> factory.addConnectorCustomizers(connector -> {
+			if (connector.getProtocolHandler() instanceof AbstractProtocol) {
+				((AbstractProtocol<?>) connector.getProtocolHandler()).setExecutor(executor);
+				logger.info("Tomcat connector on port {} runs requests on virtual threads", connector.getPort());
+			}
+		});
+	}
+
+	@Bean
+	public VirtualThreadPinningDetector virtualThreadPinningDetector(
+			@Value("${spring.threads.virtual.pinned-threshold:PT0.02S}") Duration threshold) {
+		return new VirtualThreadPinningDetector(true, threshold);
+	}
+
+	// Tomcat does not stop an executor it was given
+	@Override
+	public void destroy() {
+		executor.shutdown();
+	}
+
+	// Fails fast where Tomcat's request processing would pin every virtual thread, rather than run the requests on
+	// as many threads as there are CPUs
+	static void requireUnpinnedMonitors(String javaSpecificationVersion) {
+		String[] parts = javaSpecificationVersion.split("\\.");
+		int feature = Integer.parseInt("1".equals(parts[0]) && parts.length > 1 ? parts[1] : parts[0]);
+		if (feature < UNPINNED_MONITORS_JAVA_VERSION) {
+			throw new IllegalStateException("spring.threads.virtual.enabled=true needs Java "
+					+ UNPINNED_MONITORS_JAVA_VERSION + " or newer, this is Java " + javaSpecificationVersion
+					+ ": Tomcat " + ServerInfo.getServerNumber() + " handles each request inside a synchronized block,"
+					+ " which pins a virtual thread to its carrier before Java " + UNPINNED_MONITORS_JAVA_VERSION);
+		}
+	}
+
+	// Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory())
+	private static ExecutorService newVirtualThreadPerTaskExecutor(String prefix) {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+			builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+			ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+			return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+					.invoke(null, factory);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot create virtual threads on Java " + System.getProperty("java.version"), e);
+		}
+	}
+}
@@ -1,12 +1,17 @@
 package com.example.demo.controllers;
 
 // Import necessary libraries for handling HTTP requests, logging, and managing entities
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.IntStream;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -18,7 +23,14 @@ import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.ItemRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.requests.BatchModifyCartRequest;
+import com.example.demo.model.requests.CartOperation;
 import com.example.demo.model.requests.ModifyCartRequest;
+import com.example.demo.model.responses.CartView;
+import com.example.demo.security.AuthenticatedUser;
+import com.example.demo.service.CartService;
+import com.example.demo.service.CoalescedLookups;
+import com.example.demo.service.RequestMetrics;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,84 +50,186 @@ public class CartController {
 	@Autowired
 	private ItemRepository itemRepository;
 
+	// Inject CoalescedLookups, so that concurrent requests for the same item share one query
+	@Autowired
+	private CoalescedLookups coalescedLookups;
+
+	// Inject the CartService, which saves cart changes under optimistic locking and retries on conflicts
+	@Autowired
+	private CartService cartService;
+
+	// Inject RequestMetrics to count the requests answered with 400, 404 or 409
+	@Autowired
+	private RequestMetrics requestMetrics;
+
 	// Logger to log messages for debugging or tracking cart-related activities
 	private static final Logger log = LoggerFactory.getLogger(UserController.class);
 
 	// POST endpoint to add items to a user's cart
 	@PostMapping("/addToCart")
-	public ResponseEntity<Cart> addTocart(@RequestBody ModifyCartRequest request) {
+	public ResponseEntity<CartView> addTocart(@RequestBody ModifyCartRequest request,
+			@AuthenticationPrincipal AuthenticatedUser principal) {
 		// Log the attempt to add an item to the cart
 		log.info("Add to Cart with username [{}], item id [{}]", request.getUsername(), request.getItemId());
 
-		// Retrieve the user by username from the database
-		User user = userRepository.findByUsername(request.getUsername());
+		// Retrieve the user's cart, by its id from the token when possible
+		Cart cart = findCart(principal, request.getUsername());
 
 		// If user not found, log the error and return a NOT_FOUND response
-		if(user == null) {
+		if(cart == null) {
 			log.error("Cannot add to cart with username [{}], item id [{}]", request.getUsername(), request.getItemId());
+			requestMetrics.rejected("cart.addToCart", HttpStatus.NOT_FOUND, "user_not_found");
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
 		}
 
-		// Retrieve the item by its ID from the database
-		Optional<Item> item = itemRepository.findById(request.getItemId());
+		// Retrieve the item by its ID, sharing the query with concurrent requests for the same item
+		Optional<Item> item = coalescedLookups.findItemById(request.getItemId());
 
 		// If item not found, log the error and return a NOT_FOUND response
 		if(!item.isPresent()) {
 			log.error("Cannot add to cart with username [{}], item id [{}]", request.getUsername(), request.getItemId());
+			requestMetrics.rejected("cart.addToCart", HttpStatus.NOT_FOUND, "item_not_found");
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
 		}
 
-		// Get the user's cart
-		Cart cart = user.getCart();
-
-		// Add the item to the cart the specified number of times (based on the quantity in the request)
-		IntStream.range(0, request.getQuantity())
-				.forEach(i -> cart.addItem(item.get())); // Add item to cart multiple times based on the quantity
-
-		// Save the updated cart back to the database
-		cartRepository.save(cart);
+		// Add the requested quantity of the item to the cart as a single cart line and save it,
+		// retrying on a fresh copy of the cart if a concurrent request changed it in the meantime
+		try {
+			cart = cartService.update(cart, c -> c.addItem(item.get(), request.getQuantity()));
+		} catch (OptimisticLockingFailureException e) {
+			log.error("Cannot add to cart with username [{}], item id [{}], concurrent updates", request.getUsername(), request.getItemId());
+			requestMetrics.rejected("cart.addToCart", HttpStatus.CONFLICT, "cart_contention");
+			return ResponseEntity.status(HttpStatus.CONFLICT).build();
+		} catch (ArithmeticException e) {
+			// The line quantity or the total would overflow; the transaction rolled back and nothing was saved
+			log.error("Cannot add to cart with username [{}], item id [{}], quantity too large", request.getUsername(), request.getItemId());
+			requestMetrics.rejected("cart.addToCart", HttpStatus.BAD_REQUEST, "quantity_overflow");
+			return ResponseEntity.badRequest().build();
+		}
 
-		// Log success and return the updated cart as the response
+		// Log success and return the updated cart as the response, detached from the persistence context
 		log.info("Add to Cart success username [{}], id [{}]", request.getUsername(), request.getItemId());
-		return ResponseEntity.ok(cart);
+		return ResponseEntity.ok(CartView.of(cart));
 	}
 
 	// POST endpoint to remove items from a user's cart
 	@PostMapping("/removeFromCart")
-	public ResponseEntity<Cart> removeFromcart(@RequestBody ModifyCartRequest request) {
+	public ResponseEntity<CartView> removeFromcart(@RequestBody ModifyCartRequest request,
+			@AuthenticationPrincipal AuthenticatedUser principal) {
 		// Log the attempt to remove an item from the cart
 		log.info("Remove from Cart username [{}], id [{}]", request.getUsername(), request.getItemId());
 
-		// Retrieve the user by username from the database
-		User user = userRepository.findByUsername(request.getUsername());
+		// Retrieve the user's cart, by its id from the token when possible
+		Cart cart = findCart(principal, request.getUsername());
 
 		// If user not found, log the error and return a NOT_FOUND response
-		if(user == null) {
+		if(cart == null) {
 			log.error("Cannot remove from cart username [{}], id [{}]", request.getUsername(), request.getItemId());
+			requestMetrics.rejected("cart.removeFromCart", HttpStatus.NOT_FOUND, "user_not_found");
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
 		}
 
-		// Retrieve the item by its ID from the database
-		Optional<Item> item = itemRepository.findById(request.getItemId());
+		// Retrieve the item by its ID, sharing the query with concurrent requests for the same item
+		Optional<Item> item = coalescedLookups.findItemById(request.getItemId());
 
 		// If item not found, log the error and return a NOT_FOUND response
 		if(!item.isPresent()) {
 			log.error("Cannot remove from cart username [{}], id [{}]", request.getUsername(), request.getItemId());
+			requestMetrics.rejected("cart.removeFromCart", HttpStatus.NOT_FOUND, "item_not_found");
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
 		}
 
-		// Get the user's cart
-		Cart cart = user.getCart();
+		// Remove the requested quantity of the item from its cart line and save it,
+		// retrying on a fresh copy of the cart if a concurrent request changed it in the meantime
+		try {
+			cart = cartService.update(cart, c -> c.removeItem(item.get(), request.getQuantity()));
+		} catch (OptimisticLockingFailureException e) {
+			log.error("Cannot remove from cart username [{}], id [{}], concurrent updates", request.getUsername(), request.getItemId());
+			requestMetrics.rejected("cart.removeFromCart", HttpStatus.CONFLICT, "cart_contention");
+			return ResponseEntity.status(HttpStatus.CONFLICT).build();
+		}
 
-		// Remove the item from the cart the specified number of times (based on the quantity in the request)
-		IntStream.range(0, request.getQuantity())
-				.forEach(i -> cart.removeItem(item.get())); // Remove item from cart multiple times based on the quantity
+		// Log success and return the updated cart as the response, detached from the persistence context
+		log.info("Remove from Cart username [{}], id [{}]", request.getUsername(), request.getItemId());
+		return ResponseEntity.ok(CartView.of(cart));
+	}
 
-		// Save the updated cart back to the database
-		cartRepository.save(cart);
+	// POST endpoint to apply several add/remove operations to a user's cart in one call and one transaction
+	@PostMapping("/batch")
+	public ResponseEntity<CartView> modifyCart(@RequestBody BatchModifyCartRequest request,
+			@AuthenticationPrincipal AuthenticatedUser principal) {
+		// Log the attempt to modify the cart
+		log.info("Batch modify cart username [{}], operations [{}]", request.getUsername(),
+				request.getOperations() == null ? 0 : request.getOperations().size());
+
+		// An empty batch is a malformed request
+		if(request.getOperations() == null || request.getOperations().isEmpty()) {
+			log.error("Cannot batch modify cart without operations, username [{}]", request.getUsername());
+			requestMetrics.rejected("cart.batch", HttpStatus.BAD_REQUEST, "no_operations");
+			return ResponseEntity.badRequest().build();
+		}
 
-		// Log success and return the updated cart as the response
-		log.info("Remove from Cart username [{}], id [{}]", request.getUsername(), request.getItemId());
-		return ResponseEntity.ok(cart);
+		// Retrieve the user's cart, by its id from the token when possible
+		Cart cart = findCart(principal, request.getUsername());
+
+		// If user not found, log the error and return a NOT_FOUND response
+		if(cart == null) {
+			log.error("Cannot batch modify cart username [{}]", request.getUsername());
+			requestMetrics.rejected("cart.batch", HttpStatus.NOT_FOUND, "user_not_found");
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+		}
+
+		// Retrieve every referenced item with a single query
+		Set<Long> itemIds = request.getOperations().stream()
+				.map(CartOperation::getItemId)
+				.collect(Collectors.toSet());
+		Map<Long, Item> items = itemRepository.findAllById(itemIds).stream()
+				.collect(Collectors.toMap(Item::getId, Function.identity()));
+
+		// If any item is not found, log the error and return a NOT_FOUND response before touching the cart
+		if(items.size() != itemIds.size()) {
+			log.error("Cannot batch modify cart username [{}], unknown item ids in [{}]", request.getUsername(), itemIds);
+			requestMetrics.rejected("cart.batch", HttpStatus.NOT_FOUND, "item_not_found");
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+		}
+
+		// Apply every operation to the cart in memory and save it once, replaying all of them on a fresh copy
+		// of the cart if a concurrent request changed it in the meantime
+		try {
+			cart = cartService.update(cart, c -> {
+				for(CartOperation operation : request.getOperations()) {
+					Item item = items.get(operation.getItemId());
+					if(operation.getDelta() > 0) {
+						c.addItem(item, operation.getDelta());
+					} else {
+						c.removeItem(item, -operation.getDelta());
+					}
+				}
+			});
+		} catch (OptimisticLockingFailureException e) {
+			log.error("Cannot batch modify cart username [{}], concurrent updates", request.getUsername());
+			requestMetrics.rejected("cart.batch", HttpStatus.CONFLICT, "cart_contention");
+			return ResponseEntity.status(HttpStatus.CONFLICT).build();
+		} catch (ArithmeticException e) {
+			// A line quantity or the total would overflow; the transaction rolled back and nothing was saved
+			log.error("Cannot batch modify cart username [{}], quantity too large", request.getUsername());
+			requestMetrics.rejected("cart.batch", HttpStatus.BAD_REQUEST, "quantity_overflow");
+			return ResponseEntity.badRequest().build();
+		}
+
+		// Log success and return the updated cart as the response, detached from the persistence context
+		log.info("Batch modify cart success username [{}]", request.getUsername());
+		return ResponseEntity.ok(CartView.of(cart));
+	}
+
+	// Loads the named user's cart: by primary key when the caller is that user and its token carries the cart id,
+	// otherwise through the user. Returns null when the user does not exist.
+	private Cart findCart(AuthenticatedUser principal, String username) {
+		Long cartId = AuthenticatedUser.cartIdOf(principal, username);
+		if(cartId != null) {
+			return cartRepository.findById(cartId).orElse(null);
+		}
+		User user = userRepository.findByUsername(username);
+		return user == null ? null : user.getCart();
 	}
 }
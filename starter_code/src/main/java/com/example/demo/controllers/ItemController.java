@@ -2,18 +2,28 @@ package com.example.demo.controllers;
 
 // Import necessary libraries for handling HTTP requests, logging, and managing entities
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.example.demo.model.persistence.Item;
-import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.service.HttpCaching;
+import com.example.demo.service.ItemCatalogCache;
+import com.example.demo.service.ItemSearchIndex;
+import com.example.demo.service.RequestMetrics;
+
+import static com.example.demo.util.Constant.MAX_PAGE_SIZE;
 
 // Mark the class as a REST controller and define the base URL for item-related endpoints
 @RestController
@@ -23,31 +33,63 @@ public class ItemController {
 	// Logger to track the flow of requests and debug information for the ItemController class
 	private static final Logger logger = LoggerFactory.getLogger(ItemController.class);
 
-	// Inject the ItemRepository dependency for interacting with the database
+	// Inject the ItemCatalogCache, which serves the catalog without a database round trip
+	@Autowired
+	private ItemCatalogCache itemCatalogCache;
+
+	// Inject the ItemSearchIndex, which answers full text searches from memory
+	@Autowired
+	private ItemSearchIndex itemSearchIndex;
+
+	// Inject RequestMetrics to count the requests answered with 400 or 404
+	@Autowired
+	private RequestMetrics requestMetrics;
+
+	// Inject HttpCaching, which answers conditional GETs from the version of the catalog cache
 	@Autowired
-	private ItemRepository itemRepository;
+	private HttpCaching httpCaching;
 
-	// GET endpoint to retrieve all items from the database
+	// GET endpoint to retrieve all items of the catalog. Answers 304 Not Modified, without reading or serializing
+	// the catalog, when the If-None-Match header carries the current catalog ETag
 	@GetMapping
-	public ResponseEntity<List<Item>> getItems() {
-		// Retrieve the list of all items from the database
-		List<Item> items = itemRepository.findAll();
+	public ResponseEntity<List<Item>> getItems(
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+		// Read the version before the catalog, so a concurrent change can only make the ETag older than the body
+		String etag = httpCaching.etag("items", itemCatalogCache.getVersion());
+		if (httpCaching.matches(ifNoneMatch, etag)) {
+			logger.info("Retrieval all items not modified");
+			return httpCaching.notModified("items", etag);
+		}
+
+		// Retrieve the list of all items from the catalog cache
+		List<Item> items = itemCatalogCache.findAll();
 
 		// Log the successful retrieval of items
 		logger.info("Retrieval all items");
 
 		// Return the list of items wrapped in a ResponseEntity with HTTP 200 (OK) status
-		return ResponseEntity.ok(items);
+		return httpCaching.ok("items", etag).body(items);
 	}
 
-	// GET endpoint to retrieve a single item by its ID
+	// GET endpoint to retrieve a single item by its ID, answering 304 Not Modified while the catalog is unchanged
 	@GetMapping("/{id}")
-	public ResponseEntity<Item> getItemById(@PathVariable Long id) {
+	public ResponseEntity<Item> getItemById(@PathVariable Long id,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 		// Log the attempt to retrieve an item by its ID
 		logger.info("Retrieval item id: {}", id);
 
-		// Use ResponseEntity.of() to handle the case where the item may or may not be found
-		return ResponseEntity.of(itemRepository.findById(id));
+		String etag = httpCaching.etag("item-" + id, itemCatalogCache.getVersion());
+		if (httpCaching.matches(ifNoneMatch, etag)) {
+			return httpCaching.notModified("item", etag);
+		}
+
+		// Return the item if found, otherwise return HTTP 404 (Not Found)
+		Optional<Item> item = itemCatalogCache.findById(id);
+		if (!item.isPresent()) {
+			requestMetrics.rejected("item.getItemById", HttpStatus.NOT_FOUND, "item_not_found");
+			return ResponseEntity.notFound().build();
+		}
+		return httpCaching.ok("item", etag).body(item.get());
 	}
 
 	// GET endpoint to retrieve items by their name
@@ -56,11 +98,32 @@ public class ItemController {
 		// Log the attempt to retrieve items by their name
 		logger.info("Retrieval items by name: {}", name);
 
-		// Retrieve items from the database by their name
-		List<Item> items = itemRepository.findByName(name);
+		// Retrieve items from the catalog cache by their name
+		List<Item> items = itemCatalogCache.findByName(name);
 
 		// If no items are found, return HTTP 404 (Not Found); otherwise, return the items with HTTP 200 (OK) status
-		return items == null || items.isEmpty() ? ResponseEntity.notFound().build()
-				: ResponseEntity.ok(items);
+		if (items == null || items.isEmpty()) {
+			requestMetrics.rejected("item.getItemsByName", HttpStatus.NOT_FOUND, "item_not_found");
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.ok(items);
+	}
+
+	// GET endpoint to search items by the words of their name and description, best matches first.
+	// Every word of the query must match, and the last characters of a word may be left out
+	@GetMapping("/search")
+	public ResponseEntity<List<Item>> searchItems(@RequestParam("q") String query,
+			@RequestParam(defaultValue = "20") int limit) {
+		// Log the search
+		logger.info("Search items: {}, limit: {}", query, limit);
+
+		// A query without any word is a malformed request
+		if (query == null || query.trim().isEmpty()) {
+			requestMetrics.rejected("item.searchItems", HttpStatus.BAD_REQUEST, "empty_query");
+			return ResponseEntity.badRequest().build();
+		}
+
+		// Return the matching items, possibly none, with HTTP 200 (OK) status
+		return ResponseEntity.ok(itemSearchIndex.search(query, Math.max(1, Math.min(limit, MAX_PAGE_SIZE))));
 	}
 }
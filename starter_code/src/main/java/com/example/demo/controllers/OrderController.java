@@ -1,24 +1,49 @@
 package com.example.demo.controllers;
 
 // Import necessary libraries for handling HTTP requests, logging, and managing entities
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.OrderRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.requests.BatchSubmitOrderRequest;
+import com.example.demo.model.responses.OrderHistoryPage;
+import com.example.demo.model.responses.OrderView;
+import com.example.demo.security.AuthenticatedUser;
+import com.example.demo.service.JsonMapping;
+import com.example.demo.service.OrderHistoryService;
+import com.example.demo.service.OrderSubmissionService;
+import com.example.demo.service.RequestMetrics;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static com.example.demo.util.Constant.MAX_BATCH_ORDERS;
+import static com.example.demo.util.Constant.MAX_PAGE_SIZE;
+import static com.example.demo.util.Constant.NDJSON_MEDIA_TYPE;
+
 // Define the REST controller for handling orders with base URL /api/order
 @RestController
 @RequestMapping("/api/order")
@@ -34,22 +59,48 @@ public class OrderController {
 	@Autowired
 	private OrderRepository orderRepository;
 
+	@Autowired
+	private CartRepository cartRepository;
+
+	@Autowired
+	private OrderHistoryService orderHistoryService;
+
+	@Autowired
+	private OrderSubmissionService orderSubmissionService;
+
+	// JsonMapping holds the application's ObjectMapper and its pre-resolved writers
+	@Autowired
+	private JsonMapping jsonMapping;
+
+	// RequestMetrics counts the requests answered with 404
+	@Autowired
+	private RequestMetrics requestMetrics;
+
 	// POST endpoint for submitting an order. The user is identified by the username in the URL
 	@PostMapping("/submit/{username}")
-	public ResponseEntity<UserOrder> submit(@PathVariable String username) {
+	public ResponseEntity<OrderView> submit(@PathVariable String username,
+			@AuthenticationPrincipal AuthenticatedUser principal) {
 		// Log the attempt to submit an order for the given username
 		logger.info("Attempt to submit order for user: {}", username);
 
-		// Retrieve the user from the database using the username
-		User user = userRepository.findByUsername(username);
-		if (user == null) {
+		// Retrieve the user's cart, by its id from the token when possible, otherwise through the username
+		Long cartId = AuthenticatedUser.cartIdOf(principal, username);
+		Cart cart;
+		if (cartId != null) {
+			cart = cartRepository.findById(cartId).orElse(null);
+		} else {
+			User user = userRepository.findByUsername(username);
+			cart = user == null ? null : user.getCart();
+		}
+		if (cart == null) {
 			// If the user is not found, log the error and return HTTP 404 Not Found
 			logger.warn("User not found: {}", username);
+			requestMetrics.rejected("order.submit", HttpStatus.NOT_FOUND, "user_not_found");
 			return ResponseEntity.notFound().build();
 		}
 
 		// Create a UserOrder object from the user's cart
-		UserOrder order = UserOrder.createFromCart(user.getCart());
+		UserOrder order = UserOrder.createFromCart(cart);
 
 		// Save the order to the database
 		orderRepository.save(order);
@@ -58,20 +109,57 @@ public class OrderController {
 		logger.info("Order submit successfully for user: {}", username);
 
 		// Return the created order in the response body with HTTP 200 OK status
-		return ResponseEntity.ok(order);
+		return ResponseEntity.ok(OrderView.of(order));
+	}
+
+	// POST endpoint for submitting the carts of many users as orders in one call and one transaction.
+	// The orders are written in JDBC batches, so this is much cheaper than one submit call per user.
+	// The response lists one order per distinct username, in the order the usernames first appear in the request
+	@PostMapping("/submit")
+	public ResponseEntity<List<OrderView>> submitAll(@RequestBody BatchSubmitOrderRequest request) {
+		// Drop duplicate usernames, each cart is submitted once; the set keeps the order of the request
+		Set<String> usernames = request.getUsernames() == null ? new LinkedHashSet<>() : new LinkedHashSet<>(request.getUsernames());
+
+		// Log the attempt to submit the orders
+		logger.info("Attempt to submit orders for {} users", usernames.size());
+
+		// An empty or oversized batch is a malformed request
+		if (usernames.isEmpty() || usernames.size() > MAX_BATCH_ORDERS) {
+			logger.warn("Cannot submit a batch of {} orders, the limit is {}", usernames.size(), MAX_BATCH_ORDERS);
+			requestMetrics.rejected("order.submitAll", HttpStatus.BAD_REQUEST, usernames.isEmpty() ? "no_usernames" : "too_many_usernames");
+			return ResponseEntity.badRequest().build();
+		}
+
+		// If any user is not found, log the error and return HTTP 404 Not Found before writing anything
+		if (userRepository.countByUsernameIn(usernames) != usernames.size()) {
+			logger.warn("Unknown users in order batch: {}", usernames);
+			requestMetrics.rejected("order.submitAll", HttpStatus.NOT_FOUND, "user_not_found");
+			return ResponseEntity.notFound().build();
+		}
+
+		// Create and save one order per cart
+		List<UserOrder> orders = orderSubmissionService.submitAll(new ArrayList<>(usernames));
+
+		// Log the successful submission of the orders
+		logger.info("Orders submitted successfully for {} users", orders.size());
+
+		// Return the created orders in the response body with HTTP 200 OK status
+		return ResponseEntity.ok(orders.stream().map(OrderView::of).collect(Collectors.toList()));
 	}
 
 	// GET endpoint to retrieve the order history of a user by username
 	@GetMapping("/history/{username}")
-	public ResponseEntity<List<UserOrder>> getOrdersForUser(@PathVariable String username) {
+	public ResponseEntity<List<OrderView>> getOrdersForUser(@PathVariable String username,
+			@AuthenticationPrincipal AuthenticatedUser principal) {
 		// Log the attempt to retrieve the order history for the given username
 		logger.info("Attempt to retrieve order history for user: {}", username);
 
-		// Retrieve the user from the database using the username
-		User user = userRepository.findByUsername(username);
-		if (user == null) {
+		// Resolve the user id, from the token when possible, otherwise using the username
+		Long userId = findUserId(principal, username);
+		if (userId == null) {
 			// If the user is not found, log the error and return HTTP 404 Not Found
 			logger.warn("User not found: {}", username);
+			requestMetrics.rejected("order.history", HttpStatus.NOT_FOUND, "user_not_found");
 			return ResponseEntity.notFound().build();
 		}
 
@@ -79,6 +167,71 @@ public class OrderController {
 		logger.info("Order history retrieval successfully for user: {}", username);
 
 		// Return the list of orders associated with the user, with HTTP 200 OK status
-		return ResponseEntity.ok(orderRepository.findByUser(user));
+		return ResponseEntity.ok(orderHistoryService.history(userId));
+	}
+
+	// GET endpoint to retrieve one page of the order history; pass the returned nextCursor to get the following page
+	@GetMapping(value = "/history/{username}", params = "size")
+	public ResponseEntity<OrderHistoryPage> getOrdersForUserPage(@PathVariable String username,
+			@RequestParam int size, @RequestParam(required = false) Long cursor,
+			@AuthenticationPrincipal AuthenticatedUser principal) {
+		// Log the attempt to retrieve a page of the order history for the given username
+		logger.info("Attempt to retrieve order history page for user: {}, cursor: {}, size: {}", username, cursor, size);
+
+		// Resolve the user id, from the token when possible, otherwise using the username
+		Long userId = findUserId(principal, username);
+		if (userId == null) {
+			// If the user is not found, log the error and return HTTP 404 Not Found
+			logger.warn("User not found: {}", username);
+			requestMetrics.rejected("order.historyPage", HttpStatus.NOT_FOUND, "user_not_found");
+			return ResponseEntity.notFound().build();
+		}
+
+		// Return the requested page, with HTTP 200 OK status
+		return ResponseEntity.ok(orderHistoryService.page(userId, cursor, size));
+	}
+
+	// GET endpoint to export the full order history as newline-delimited JSON. Orders are written page by page,
+	// so memory use stays flat however many orders the user has
+	@GetMapping(value = "/history/{username}", produces = NDJSON_MEDIA_TYPE)
+	public ResponseEntity<StreamingResponseBody> streamOrdersForUser(@PathVariable String username,
+			@AuthenticationPrincipal AuthenticatedUser principal) {
+		// Log the attempt to export the order history for the given username
+		logger.info("Attempt to export order history for user: {}", username);
+
+		// Resolve the user id, from the token when possible, otherwise using the username
+		Long userId = findUserId(principal, username);
+		if (userId == null) {
+			// If the user is not found, log the error and return HTTP 404 Not Found
+			logger.warn("User not found: {}", username);
+			requestMetrics.rejected("order.historyExport", HttpStatus.NOT_FOUND, "user_not_found");
+			return ResponseEntity.notFound().build();
+		}
+
+		ObjectWriter writer = jsonMapping.writerFor(OrderView.class);
+		StreamingResponseBody body = out -> {
+			// Keep the generator from closing the servlet stream after each order; lines are separated by '\n' only
+			JsonGenerator generator = jsonMapping.getObjectMapper().getFactory().createGenerator(out)
+					.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+					.setRootValueSeparator(null);
+			Long cursor = null;
+			do {
+				OrderHistoryPage page = orderHistoryService.page(userId, cursor, MAX_PAGE_SIZE);
+				for (OrderView order : page.getOrders()) {
+					writer.writeValue(generator, order);
+					generator.writeRaw('\n');
+				}
+				generator.flush();
+				cursor = page.getNextCursor();
+			} while (cursor != null);
+		};
+		return ResponseEntity.ok().body(body);
+	}
+
+	// Resolves the named user's id: from the token when the caller is that user, otherwise with a query selecting
+	// only the id. Returns null when the user does not exist.
+	private Long findUserId(AuthenticatedUser principal, String username) {
+		Long userId = AuthenticatedUser.userIdOf(principal, username);
+		return userId != null ? userId : userRepository.findIdByUsername(username);
 	}
 }
@@ -0,0 +1,60 @@
+package com.example.demo.controllers;
+
+// Import necessary libraries for the functional reactive endpoints, logging, and the streamed types
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.responses.OrderView;
+import com.example.demo.service.ReactiveReadService;
+import com.example.demo.service.RequestMetrics;
+
+import reactor.core.publisher.Mono;
+
+import static com.example.demo.util.Constant.NDJSON_MEDIA_TYPE;
+
+// Handlers of the reactive read API under /rx (routes in ReactiveApiConfiguration). Results are streamed as
+// newline-delimited JSON, one item or order per line, written as fast as the client reads them.
+@Component
+public class ReactiveReadHandler {
+
+	// Logger to track the flow of requests and debug information for the reactive endpoints
+	private static final Logger logger = LoggerFactory.getLogger(ReactiveReadHandler.class);
+
+	private static final MediaType NDJSON = MediaType.parseMediaType(NDJSON_MEDIA_TYPE);
+
+	// Inject the ReactiveReadService, which streams query results page by page
+	@Autowired
+	private ReactiveReadService reactiveReadService;
+
+	// Inject RequestMetrics to count the requests answered with 404
+	@Autowired
+	private RequestMetrics requestMetrics;
+
+	// GET /rx/item: every item of the catalog, in id order
+	public Mono<ServerResponse> items(ServerRequest request) {
+		logger.info("Streaming all items");
+		return ServerResponse.ok().contentType(NDJSON).body(reactiveReadService.items(), Item.class);
+	}
+
+	// GET /rx/order/history/{username}: every order of the user, oldest first
+	public Mono<ServerResponse> orderHistory(ServerRequest request) {
+		String username = request.pathVariable("username");
+		logger.info("Streaming order history for user: {}", username);
+		return reactiveReadService.findUserId(username)
+				.flatMap(userId -> ServerResponse.ok().contentType(NDJSON)
+						.body(reactiveReadService.orderHistory(userId), OrderView.class))
+				.switchIfEmpty(Mono.defer(() -> {
+					// If the user is not found, log the error and return HTTP 404 Not Found
+					logger.warn("User not found: {}", username);
+					requestMetrics.rejected("rx.order.history", HttpStatus.NOT_FOUND, "user_not_found");
+					return ServerResponse.notFound().build();
+				}));
+	}
+}
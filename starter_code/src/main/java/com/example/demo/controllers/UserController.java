@@ -1,22 +1,35 @@
 package com.example.demo.controllers;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.User;
-import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
 import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.security.AuthenticatedUser;
+import com.example.demo.service.CoalescedLookups;
+import com.example.demo.service.HttpCaching;
+import com.example.demo.service.PasswordHashingService;
+import com.example.demo.service.RequestMetrics;
+import com.example.demo.service.UserCache;
 
 import javax.validation.Valid;
 import org.slf4j.Logger;
@@ -34,44 +47,82 @@ public class UserController {
 	@Autowired
 	private UserRepository userRepository;
 
-	// Autowire the CartRepository to interact with the Cart table in the database
+	// Autowire CoalescedLookups, so that concurrent requests for the same username share one query
+	@Autowired
+	private CoalescedLookups coalescedLookups;
+
+	// Autowire the PasswordHashingService, which encrypts passwords on its own bounded pool
+	@Autowired
+	private PasswordHashingService passwordHashingService;
+
+	// Autowire the application's task executor, which saves a new user once the password is hashed, so the
+	// threads of the hashing pool only ever run BCrypt and never wait for a connection or a write
+	@Autowired
+	@Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+	private TaskExecutor taskExecutor;
+
+	// Autowire the UserCache, which must forget a username whenever its credentials change
+	@Autowired
+	private UserCache userCache;
+
+	// Autowire RequestMetrics to count the requests answered with 400 or 404
 	@Autowired
-	private CartRepository cartRepository;
+	private RequestMetrics requestMetrics;
 
-	// Autowire BCryptPasswordEncoder to handle password encryption
+	// Autowire HttpCaching, which answers conditional GETs from the user version kept by the UserCache
 	@Autowired
-	private BCryptPasswordEncoder bCryptPasswordEncoder;
+	private HttpCaching httpCaching;
 
-	// Endpoint to retrieve a user by their ID
+	// Endpoint to retrieve a user by their ID. Answers 304 Not Modified, without a query, when the If-None-Match
+	// header carries the current ETag, which changes whenever any user is created or updated
 	@GetMapping("/id/{id}")
-	public ResponseEntity<User> findById(@PathVariable Long id) {
+	public ResponseEntity<User> findById(@PathVariable Long id,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 		log.info("Finding user by ID: {}", id); // Log the attempt to find a user by ID
+		// Read the version before the user, so a concurrent change can only make the ETag older than the body
+		String etag = httpCaching.etag("user-" + id, userCache.getVersion());
+		if (httpCaching.matches(ifNoneMatch, etag)) {
+			return httpCaching.notModified("user", etag);
+		}
 		// Return the user if found, otherwise return HTTP 404 Not Found
-		return ResponseEntity.of(userRepository.findById(id));
+		Optional<User> user = userRepository.findById(id);
+		if (!user.isPresent()) {
+			requestMetrics.rejected("user.findById", HttpStatus.NOT_FOUND, "user_not_found");
+			return ResponseEntity.notFound().build();
+		}
+		return httpCaching.ok("user", etag).body(user.get());
 	}
 
 	// Endpoint to retrieve a user by their username
 	@GetMapping("/{username}")
-	public ResponseEntity<User> findByUserName(@PathVariable String username) {
+	public ResponseEntity<User> findByUserName(@PathVariable String username,
+			@AuthenticationPrincipal AuthenticatedUser principal) {
 		log.info("Finding user by username: {}", username); // Log the attempt to find a user by username
-		// Retrieve the user using the provided username
-		User user = userRepository.findByUsername(username);
+		// Retrieve the user by the id from the token when the caller asks for itself, otherwise by username,
+		// sharing the query with concurrent requests for the same username
+		Long userId = AuthenticatedUser.userIdOf(principal, username);
+		User user = userId != null ? userRepository.findById(userId).orElse(null) : coalescedLookups.findUserByUsername(username);
 		// Return the user if found, otherwise return HTTP 404 Not Found
-		return user == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(user);
+		if (user == null) {
+			requestMetrics.rejected("user.findByUserName", HttpStatus.NOT_FOUND, "user_not_found");
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.ok(user);
 	}
 
-	// Endpoint to create a new user
+	// Endpoint to create a new user. The response is completed asynchronously once the password is hashed,
+	// so the request thread is released while BCrypt runs
 	@PostMapping("/create")
-	public ResponseEntity<User> createUser(@Valid @RequestBody CreateUserRequest createUserRequest) {
+	public CompletableFuture<ResponseEntity<User>> createUser(@Valid @RequestBody CreateUserRequest createUserRequest) {
 		log.info("Creating user: {}", createUserRequest.getUsername()); // Log the attempt to create a user
 
 		// Create a new User entity
 		User user = new User();
 		user.setUsername(createUserRequest.getUsername());
 
-		// Create a new Cart for the user and save it
+		// Create a new Cart for the user; it is saved together with the user through the cascade on User.cart,
+		// because the save runs on another thread where an entity saved here would already be detached
 		Cart cart = new Cart();
-		cartRepository.save(cart);
 
 		// Associate the newly created cart with the user
 		user.setCart(cart);
@@ -80,17 +131,31 @@ public class UserController {
 		if (createUserRequest.getPassword().length() < 7 ||
 				!createUserRequest.getPassword().equals(createUserRequest.getConfirmPassword())) {
 			log.error("Error with user password. Cannot create user {}", createUserRequest.getUsername());
-			return ResponseEntity.badRequest().build(); // Return HTTP 400 Bad Request if password is invalid
+			requestMetrics.rejected("user.createUser", HttpStatus.BAD_REQUEST, "invalid_password");
+			return CompletableFuture.completedFuture(ResponseEntity.badRequest().build()); // Return HTTP 400 Bad Request if password is invalid
+		}
+
+		// Encrypt the password using BCrypt on the hashing pool
+		CompletableFuture<String> passwordHash;
+		try {
+			passwordHash = passwordHashingService.encode(createUserRequest.getPassword());
+		} catch (RejectedExecutionException e) {
+			log.warn("Password hashing pool saturated. Cannot create user {}", createUserRequest.getUsername());
+			requestMetrics.rejected("user.createUser", HttpStatus.SERVICE_UNAVAILABLE, "hashing_saturated");
+			return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build()); // Return HTTP 503 when overloaded
 		}
 
-		// Encrypt the password using BCrypt
-		user.setPassword(bCryptPasswordEncoder.encode(createUserRequest.getPassword()));
+		// Once hashed, continue on the task executor: a slow database must not hold up the hashing of other requests
+		return passwordHash.thenApplyAsync(hash -> {
+			user.setPassword(hash);
 
-		// Save the user entity to the database
-		userRepository.save(user);
+			// Save the user entity to the database and drop any cached credentials for the username
+			userRepository.save(user);
+			userCache.invalidate(user.getUsername());
 
-		log.info("User created successfully: {}", user.getUsername()); // Log the successful creation of the user
-		// Return the created user with HTTP 200 OK status
-		return ResponseEntity.ok(user);
+			log.info("User created successfully: {}", user.getUsername()); // Log the successful creation of the user
+			// Return the created user with HTTP 200 OK status
+			return ResponseEntity.ok(user);
+		}, taskExecutor);
 	}
 }
@@ -2,20 +2,28 @@ package com.example.demo.model.persistence;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
+import javax.persistence.CollectionTable;
 import javax.persistence.Column;
+import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
-import javax.persistence.ManyToMany;
+import javax.persistence.JoinColumn;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
+import javax.persistence.OrderColumn;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Version;
 
+import org.hibernate.annotations.BatchSize;
+
+import com.example.demo.util.Constant;
+import com.example.demo.util.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 @Entity
@@ -23,30 +31,56 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 public class Cart {
 	
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cart_seq")
+	@SequenceGenerator(name = "cart_seq", sequenceName = "cart_seq", allocationSize = 50)
 	@JsonProperty
 	@Column
 	private Long id;
 	
-	@ManyToMany
+	@ElementCollection
+	@CollectionTable(name = "cart_line", joinColumns = @JoinColumn(name = "cart_id"))
+	@OrderColumn(name = "line_index")
+	@BatchSize(size = Constant.MAX_PAGE_SIZE)
 	@JsonProperty
-	@Column
-    private List<Item> items;
+    private List<CartLine> lines;
 	
 	@OneToOne(mappedBy = "cart")
 	@JsonProperty
     private User user;
 	
-	@Column
-	@JsonProperty
-	private BigDecimal total;
+	@Column(name = "total_cents", nullable = false)
+	@JsonIgnore
+	private long totalCents;
+
+	// Optimistic lock: a concurrent update of the same cart fails on flush instead of being silently overwritten
+	@Version
+	@Column(nullable = false)
+	@JsonIgnore
+	private long version;
 	
+	@JsonProperty("total")
 	public BigDecimal getTotal() {
-		return total;
+		return Money.toBigDecimal(totalCents);
 	}
 
 	public void setTotal(BigDecimal total) {
-		this.total = total;
+		this.totalCents = total == null ? 0 : Money.toCents(total);
+	}
+
+	public long getTotalCents() {
+		return totalCents;
+	}
+
+	public void setTotalCents(long totalCents) {
+		this.totalCents = totalCents;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public void setVersion(long version) {
+		this.version = version;
 	}
 
 	public User getUser() {
@@ -65,33 +99,65 @@ public class Cart {
 		this.id = id;
 	}
 
-	public List<Item> getItems() {
-		return items;
+	public List<CartLine> getLines() {
+		return lines;
 	}
 
-	public void setItems(List<Item> items) {
-		this.items = items;
+	public void setLines(List<CartLine> lines) {
+		this.lines = lines;
 	}
 	
 	public void addItem(Item item) {
-		if(items == null) {
-			items = new ArrayList<>();
+		addItem(item, 1);
+	}
+	
+	// Throws ArithmeticException, leaving the cart unchanged, when the line quantity or the total would overflow
+	public void addItem(Item item, int quantity) {
+		if(quantity <= 0) {
+			return;
+		}
+		CartLine line = findLine(item.getId());
+		long unitPriceCents = line == null ? item.getPriceCents() : line.getUnitPriceCents();
+		int newQuantity = Math.addExact(line == null ? 0 : line.getQuantity(), quantity);
+		long newTotalCents = Math.addExact(totalCents, Money.times(unitPriceCents, quantity));
+		if(lines == null) {
+			lines = new ArrayList<>();
 		}
-		items.add(item);
-		if(total == null) {
-			total = new BigDecimal(0);
+		if(line == null) {
+			line = new CartLine(item.getId(), 0, unitPriceCents);
+			lines.add(line);
 		}
-		total = total.add(item.getPrice());
+		line.setQuantity(newQuantity);
+		totalCents = newTotalCents;
 	}
 	
 	public void removeItem(Item item) {
-		if(items == null) {
-			items = new ArrayList<>();
+		removeItem(item, 1);
+	}
+	
+	public void removeItem(Item item, int quantity) {
+		CartLine line = findLine(item.getId());
+		if(line == null || quantity <= 0) {
+			return;
+		}
+		int removed = Math.min(quantity, line.getQuantity());
+		line.setQuantity(line.getQuantity() - removed);
+		if(line.getQuantity() == 0) {
+			lines.remove(line);
+		}
+		totalCents -= Money.times(line.getUnitPriceCents(), removed);
+	}
+	
+	private CartLine findLine(Long itemId) {
+		if(lines == null) {
+			return null;
 		}
-		items.remove(item);
-		if(total == null) {
-			total = new BigDecimal(0);
+		for(int i = 0; i < lines.size(); i++) {
+			CartLine line = lines.get(i);
+			if(line.getItemId().equals(itemId)) {
+				return line;
+			}
 		}
-		total = total.subtract(item.getPrice());
+		return null;
 	}
 }
@@ -0,0 +1,108 @@
+package com.example.demo.model.persistence;
+
+import java.math.BigDecimal;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+
+import com.example.demo.util.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@Embeddable
+public class CartLine {
+
+	@Column(name = "item_id", nullable = false)
+	@JsonProperty
+	private Long itemId;
+
+	@Column(nullable = false)
+	@JsonProperty
+	private int quantity;
+
+	@Column(name = "unit_price_cents", nullable = false)
+	@JsonIgnore
+	private long unitPriceCents;
+
+	public CartLine() {
+	}
+
+	public CartLine(Long itemId, int quantity, long unitPriceCents) {
+		this.itemId = itemId;
+		this.quantity = quantity;
+		this.unitPriceCents = unitPriceCents;
+	}
+
+	public CartLine(Long itemId, int quantity, BigDecimal unitPrice) {
+		this(itemId, quantity, Money.toCents(unitPrice));
+	}
+
+	public static CartLine copyOf(CartLine line) {
+		return new CartLine(line.getItemId(), line.getQuantity(), line.getUnitPriceCents());
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((itemId == null) ? 0 : itemId.hashCode());
+		result = prime * result + quantity;
+		result = prime * result + (int) (unitPriceCents ^ (unitPriceCents >>> 32));
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		CartLine other = (CartLine) obj;
+		if (itemId == null) {
+			if (other.itemId != null)
+				return false;
+		} else if (!itemId.equals(other.itemId))
+			return false;
+		if (quantity != other.quantity)
+			return false;
+		if (unitPriceCents != other.unitPriceCents)
+			return false;
+		return true;
+	}
+
+	public Long getItemId() {
+		return itemId;
+	}
+
+	public void setItemId(Long itemId) {
+		this.itemId = itemId;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public void setQuantity(int quantity) {
+		this.quantity = quantity;
+	}
+
+	@JsonProperty("unitPrice")
+	public BigDecimal getUnitPrice() {
+		return Money.toBigDecimal(unitPriceCents);
+	}
+
+	public void setUnitPrice(BigDecimal unitPrice) {
+		this.unitPriceCents = Money.toCents(unitPrice);
+	}
+
+	public long getUnitPriceCents() {
+		return unitPriceCents;
+	}
+
+	public void setUnitPriceCents(long unitPriceCents) {
+		this.unitPriceCents = unitPriceCents;
+	}
+
+}
@@ -2,24 +2,41 @@ package com.example.demo.model.persistence;
 
 import java.math.BigDecimal;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.PostUpdate;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import com.example.demo.service.ItemCatalogListener;
+import com.example.demo.util.Money;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 @Entity
-@Table(name = "item")
+@Table(name = "item", indexes = @Index(name = "idx_item_name", columnList = "name"))
+@EntityListeners(ItemCatalogListener.class)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "item")
 public class Item {
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "item_seq")
+	@SequenceGenerator(name = "item_seq", sequenceName = "item_seq", allocationSize = 50)
 	@JsonProperty
 	private Long id;
 	
@@ -35,6 +52,11 @@ public class Item {
 	@JsonProperty
 	private String description;
 	
+	// Price in cents, resolved once per load so cart arithmetic never has to convert the BigDecimal again
+	@Transient
+	@JsonIgnore
+	private long priceCents;
+	
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -82,6 +104,18 @@ public class Item {
 
 	public void setPrice(BigDecimal price) {
 		this.price = price;
+		resolvePriceCents();
+	}
+
+	public long getPriceCents() {
+		return priceCents;
+	}
+
+	@PostLoad
+	@PostPersist
+	@PostUpdate
+	void resolvePriceCents() {
+		this.priceCents = price == null ? 0 : Money.toCents(price);
 	}
 
 	public String getDescription() {
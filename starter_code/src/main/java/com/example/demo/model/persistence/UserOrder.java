@@ -1,21 +1,28 @@
 package com.example.demo.model.persistence;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
-import javax.persistence.CascadeType;
+import javax.persistence.CollectionTable;
 import javax.persistence.Column;
+import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
-import javax.persistence.JoinTable;
-import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
+import javax.persistence.OrderColumn;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.BatchSize;
+
+import com.example.demo.util.Constant;
+import com.example.demo.util.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 @Entity
@@ -23,24 +30,27 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 public class UserOrder {
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_order_seq")
+	@SequenceGenerator(name = "user_order_seq", sequenceName = "user_order_seq", allocationSize = 50)
 	@JsonProperty
 	@Column
 	private Long id;
 	
-	@ManyToMany(cascade = CascadeType.ALL)
+	@ElementCollection
+	@CollectionTable(name = "user_order_line", joinColumns = @JoinColumn(name = "order_id"))
+	@OrderColumn(name = "line_index")
+	@BatchSize(size = Constant.MAX_PAGE_SIZE)
 	@JsonProperty
-	@Column
-    private List<Item> items;
+    private List<CartLine> lines;
 	
 	@ManyToOne
 	@JoinColumn(name="user_id", nullable = false, referencedColumnName = "id")
 	@JsonProperty
     private User user;
 	
-	@JsonProperty
-	@Column
-	private BigDecimal total;
+	@Column(name = "total_cents", nullable = false)
+	@JsonIgnore
+	private long totalCents;
 
 	public Long getId() {
 		return id;
@@ -50,12 +60,12 @@ public class UserOrder {
 		this.id = id;
 	}
 
-	public List<Item> getItems() {
-		return items;
+	public List<CartLine> getLines() {
+		return lines;
 	}
 
-	public void setItems(List<Item> items) {
-		this.items = items;
+	public void setLines(List<CartLine> lines) {
+		this.lines = lines;
 	}
 
 	public User getUser() {
@@ -66,18 +76,28 @@ public class UserOrder {
 		this.user = user;
 	}
 	
+	@JsonProperty("total")
 	public BigDecimal getTotal() {
-		return total;
+		return Money.toBigDecimal(totalCents);
 	}
 
 	public void setTotal(BigDecimal total) {
-		this.total = total;
+		this.totalCents = total == null ? 0 : Money.toCents(total);
+	}
+
+	public long getTotalCents() {
+		return totalCents;
+	}
+
+	public void setTotalCents(long totalCents) {
+		this.totalCents = totalCents;
 	}
 
 	public static UserOrder createFromCart(Cart cart) {
 		UserOrder order = new UserOrder();
-		order.setItems(cart.getItems().stream().collect(Collectors.toList()));
-		order.setTotal(cart.getTotal());
+		order.setLines(cart.getLines() == null ? new ArrayList<>()
+				: cart.getLines().stream().map(CartLine::copyOf).collect(Collectors.toList()));
+		order.setTotalCents(cart.getTotalCents());
 		order.setUser(cart.getUser());
 		return order;
 	}
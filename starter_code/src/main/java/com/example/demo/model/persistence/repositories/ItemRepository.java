@@ -2,13 +2,27 @@ package com.example.demo.model.persistence.repositories;
 
 import java.util.List;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import com.example.demo.model.persistence.Item;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface ItemRepository extends JpaRepository<Item, Long> {
+	// Query results are cached as item ids until the next write to the item table; the items themselves
+	// come from the item entity cache
+	@QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
 	List<Item> findByName(String name);
 
+	@Override
+	@QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+	List<Item> findAll();
+
+	// One keyset page of the catalog: the items after cursor, in the order and number given by the pageable
+	List<Item> findByIdGreaterThan(Long cursor, Pageable pageable);
+
 }
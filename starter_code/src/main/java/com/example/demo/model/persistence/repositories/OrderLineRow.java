@@ -0,0 +1,20 @@
+package com.example.demo.model.persistence.repositories;
+
+// Interface projection over one row of the order history query: the columns of an order and its owner that are
+// rendered, repeated for each of its lines. Orders without lines come back as one row with null line columns.
+public interface OrderLineRow {
+
+	Long getOrderId();
+
+	Long getTotalCents();
+
+	Long getUserId();
+
+	String getUsername();
+
+	Long getItemId();
+
+	Integer getQuantity();
+
+	Long getUnitPriceCents();
+}
@@ -3,12 +3,23 @@ package com.example.demo.model.persistence.repositories;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.UserOrder;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface OrderRepository extends JpaRepository<UserOrder, Long> {
-	List<UserOrder> findByUser(User user);
+
+	// Up to size orders of the user with an id greater than cursor, in id order, with their owner and lines, in one
+	// query: the orders are picked in a derived table so the limit counts orders rather than line rows
+	@Query(value = "select o.id as orderId, o.total_cents as totalCents, u.id as userId, u.username as username, "
+			+ "l.item_id as itemId, l.quantity as quantity, l.unit_price_cents as unitPriceCents "
+			+ "from (select id, total_cents, user_id from user_order where user_id = :userId and id > :cursor "
+			+ "order by id limit :size) o "
+			+ "join user u on u.id = o.user_id "
+			+ "left join user_order_line l on l.order_id = o.id "
+			+ "order by o.id, l.line_index", nativeQuery = true)
+	List<OrderLineRow> findLineRows(@Param("userId") long userId, @Param("cursor") long cursor, @Param("size") int size);
 }
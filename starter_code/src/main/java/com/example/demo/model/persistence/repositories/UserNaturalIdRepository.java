@@ -0,0 +1,8 @@
+package com.example.demo.model.persistence.repositories;
+
+import com.example.demo.model.persistence.User;
+
+// Username lookups served by Hibernate's natural-id cache instead of a query, see UserNaturalIdRepositoryImpl
+public interface UserNaturalIdRepository {
+	User findByUsername(String username);
+}
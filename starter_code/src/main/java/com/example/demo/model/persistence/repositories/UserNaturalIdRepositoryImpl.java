@@ -0,0 +1,24 @@
+package com.example.demo.model.persistence.repositories;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.model.persistence.User;
+
+// The username is the natural id of User: Hibernate resolves it to the primary key through the userNaturalId
+// cache region and then reads the user from the user entity region, so a cached user costs no query at all.
+// Both regions are kept up to date by Hibernate on every insert, update and delete of a user.
+public class UserNaturalIdRepositoryImpl implements UserNaturalIdRepository {
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Override
+	@Transactional(readOnly = true)
+	public User findByUsername(String username) {
+		return entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).load(username);
+	}
+}
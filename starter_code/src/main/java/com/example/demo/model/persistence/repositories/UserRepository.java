@@ -1,11 +1,28 @@
 package com.example.demo.model.persistence.repositories;
 
+import java.util.Collection;
+import java.util.List;
+
+import javax.persistence.QueryHint;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import com.example.demo.model.persistence.User;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
-	User findByUsername(String username);
+public interface UserRepository extends JpaRepository<User, Long>, UserNaturalIdRepository {
+
+	// Cached in the query cache until the next write to the user table
+	@Query("select u.id from User u where u.username = :username")
+	@QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+	Long findIdByUsername(@Param("username") String username);
+
+	long countByUsernameIn(Collection<String> usernames);
+
+	@Query("select u from User u join fetch u.cart where u.username in :usernames")
+	List<User> findWithCartByUsernameIn(@Param("usernames") Collection<String> usernames);
 }
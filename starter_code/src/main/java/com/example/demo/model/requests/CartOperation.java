@@ -0,0 +1,38 @@
+package com.example.demo.model.requests;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class CartOperation {
+
+	@JsonProperty
+	private long itemId;
+
+	// Units to add when positive, units to remove when negative
+	@JsonProperty
+	private int delta;
+
+	public CartOperation() {
+	}
+
+	public CartOperation(long itemId, int delta) {
+		this.itemId = itemId;
+		this.delta = delta;
+	}
+
+	public long getItemId() {
+		return itemId;
+	}
+
+	public void setItemId(long itemId) {
+		this.itemId = itemId;
+	}
+
+	public int getDelta() {
+		return delta;
+	}
+
+	public void setDelta(int delta) {
+		this.delta = delta;
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.example.demo.model.responses;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.demo.model.persistence.CartLine;
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.User;
+import com.example.demo.util.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+// A cart as rendered in responses, detached from the persistence context so serializing it never loads anything
+public class CartView {
+
+	@JsonProperty
+	private Long id;
+
+	@JsonProperty
+	private List<LineView> lines;
+
+	@JsonProperty
+	private UserRef user;
+
+	@JsonIgnore
+	private long totalCents;
+
+	public CartView() {
+	}
+
+	public CartView(Long id, List<LineView> lines, UserRef user, long totalCents) {
+		this.id = id;
+		this.lines = lines;
+		this.user = user;
+		this.totalCents = totalCents;
+	}
+
+	public static CartView of(Cart cart) {
+		List<LineView> lines = new ArrayList<>();
+		if (cart.getLines() != null) {
+			for (CartLine line : cart.getLines()) {
+				lines.add(LineView.of(line));
+			}
+		}
+		User user = cart.getUser();
+		return new CartView(cart.getId(), lines, user == null ? null : new UserRef(user.getId(), user.getUsername()),
+				cart.getTotalCents());
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public List<LineView> getLines() {
+		return lines;
+	}
+
+	public void setLines(List<LineView> lines) {
+		this.lines = lines;
+	}
+
+	public UserRef getUser() {
+		return user;
+	}
+
+	public void setUser(UserRef user) {
+		this.user = user;
+	}
+
+	@JsonProperty("total")
+	public BigDecimal getTotal() {
+		return Money.toBigDecimal(totalCents);
+	}
+
+	public long getTotalCents() {
+		return totalCents;
+	}
+
+	public void setTotalCents(long totalCents) {
+		this.totalCents = totalCents;
+	}
+
+}
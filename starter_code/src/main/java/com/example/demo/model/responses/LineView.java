@@ -0,0 +1,95 @@
+package com.example.demo.model.responses;
+
+import java.math.BigDecimal;
+
+import com.example.demo.model.persistence.CartLine;
+import com.example.demo.util.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+// One line of a cart or order as rendered in responses
+public class LineView {
+
+	@JsonProperty
+	private Long itemId;
+
+	@JsonProperty
+	private int quantity;
+
+	@JsonIgnore
+	private long unitPriceCents;
+
+	public LineView() {
+	}
+
+	public LineView(Long itemId, int quantity, long unitPriceCents) {
+		this.itemId = itemId;
+		this.quantity = quantity;
+		this.unitPriceCents = unitPriceCents;
+	}
+
+	public static LineView of(CartLine line) {
+		return new LineView(line.getItemId(), line.getQuantity(), line.getUnitPriceCents());
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((itemId == null) ? 0 : itemId.hashCode());
+		result = prime * result + quantity;
+		result = prime * result + (int) (unitPriceCents ^ (unitPriceCents >>> 32));
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		LineView other = (LineView) obj;
+		if (itemId == null) {
+			if (other.itemId != null)
+				return false;
+		} else if (!itemId.equals(other.itemId))
+			return false;
+		if (quantity != other.quantity)
+			return false;
+		if (unitPriceCents != other.unitPriceCents)
+			return false;
+		return true;
+	}
+
+	public Long getItemId() {
+		return itemId;
+	}
+
+	public void setItemId(Long itemId) {
+		this.itemId = itemId;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public void setQuantity(int quantity) {
+		this.quantity = quantity;
+	}
+
+	@JsonProperty("unitPrice")
+	public BigDecimal getUnitPrice() {
+		return Money.toBigDecimal(unitPriceCents);
+	}
+
+	public long getUnitPriceCents() {
+		return unitPriceCents;
+	}
+
+	public void setUnitPriceCents(long unitPriceCents) {
+		this.unitPriceCents = unitPriceCents;
+	}
+
+}
@@ -0,0 +1,40 @@
+package com.example.demo.model.responses;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class OrderHistoryPage {
+
+	@JsonProperty
+	private List<OrderView> orders;
+
+	// Id of the last order of this page, to be passed back as cursor; null when there are no more orders
+	@JsonProperty
+	private Long nextCursor;
+
+	public OrderHistoryPage() {
+	}
+
+	public OrderHistoryPage(List<OrderView> orders, Long nextCursor) {
+		this.orders = orders;
+		this.nextCursor = nextCursor;
+	}
+
+	public List<OrderView> getOrders() {
+		return orders;
+	}
+
+	public void setOrders(List<OrderView> orders) {
+		this.orders = orders;
+	}
+
+	public Long getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(Long nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.example.demo.model.responses;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.demo.model.persistence.CartLine;
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.User;
+import com.example.demo.util.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+// An order as rendered in responses. Built from the entity right after it is saved, or from the rows of the order history projection
+public class OrderView {
+
+	@JsonProperty
+	private Long id;
+
+	@JsonProperty
+	private List<LineView> lines;
+
+	@JsonProperty
+	private UserRef user;
+
+	@JsonIgnore
+	private long totalCents;
+
+	public OrderView() {
+	}
+
+	public OrderView(Long id, List<LineView> lines, UserRef user, long totalCents) {
+		this.id = id;
+		this.lines = lines;
+		this.user = user;
+		this.totalCents = totalCents;
+	}
+
+	public static OrderView of(UserOrder order) {
+		List<LineView> lines = new ArrayList<>();
+		if (order.getLines() != null) {
+			for (CartLine line : order.getLines()) {
+				lines.add(LineView.of(line));
+			}
+		}
+		User user = order.getUser();
+		return new OrderView(order.getId(), lines, user == null ? null : new UserRef(user.getId(), user.getUsername()),
+				order.getTotalCents());
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public List<LineView> getLines() {
+		return lines;
+	}
+
+	public void setLines(List<LineView> lines) {
+		this.lines = lines;
+	}
+
+	public UserRef getUser() {
+		return user;
+	}
+
+	public void setUser(UserRef user) {
+		this.user = user;
+	}
+
+	@JsonProperty("total")
+	public BigDecimal getTotal() {
+		return Money.toBigDecimal(totalCents);
+	}
+
+	public long getTotalCents() {
+		return totalCents;
+	}
+
+	public void setTotalCents(long totalCents) {
+		this.totalCents = totalCents;
+	}
+
+}
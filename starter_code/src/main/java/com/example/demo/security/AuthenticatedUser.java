@@ -0,0 +1,79 @@
+package com.example.demo.security;
+
+// Import necessary classes for the Spring Security principal
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Objects;
+
+// Principal of a request authenticated by JWT. Besides the username it carries the user id and cart id from the
+// token's signed claims, so controllers can load the caller's rows by primary key instead of by username.
+// Controllers receive it with @AuthenticationPrincipal; it is null for requests without a token.
+// It deliberately does not implement java.security.Principal: Spring MVC would then resolve such parameters to the
+// servlet request's principal (the Authentication) before @AuthenticationPrincipal is considered.
+public class AuthenticatedUser implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String username;
+    private final Long userId;
+    private final Long cartId;
+
+    public AuthenticatedUser(String username, Long userId, Long cartId) {
+        this.username = username;
+        this.userId = userId;
+        this.cartId = cartId;
+    }
+
+    // Id of the named user, when the principal is that user and its token carried the id; null otherwise
+    public static Long userIdOf(AuthenticatedUser principal, String username) {
+        return principal != null && principal.is(username) ? principal.userId : null;
+    }
+
+    // Id of the named user's cart, when the principal is that user and its token carried the id; null otherwise
+    public static Long cartIdOf(AuthenticatedUser principal, String username) {
+        return principal != null && principal.is(username) ? principal.cartId : null;
+    }
+
+    private boolean is(String username) {
+        return Objects.equals(this.username, username);
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Long getCartId() {
+        return cartId;
+    }
+
+    // Authentication.getName() falls back to the principal's toString()
+    @Override
+    public String toString() {
+        return username;
+    }
+
+    // UserDetails returned by UserDetailsServiceImpl, so the ids reach JWTAuthenticationFilter after a login
+    public static class Details extends User {
+
+        private static final long serialVersionUID = 1L;
+
+        private final AuthenticatedUser authenticatedUser;
+
+        public Details(AuthenticatedUser authenticatedUser, String password,
+                       Collection<? extends GrantedAuthority> authorities) {
+            super(authenticatedUser.getUsername(), password, authorities);
+            this.authenticatedUser = authenticatedUser;
+        }
+
+        public AuthenticatedUser getAuthenticatedUser() {
+            return authenticatedUser;
+        }
+    }
+}
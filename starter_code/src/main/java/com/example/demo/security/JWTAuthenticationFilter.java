@@ -2,14 +2,21 @@ package com.example.demo.security;
 
 // Import necessary libraries for JWT handling, Spring Security authentication, and object mapping
 import com.auth0.jwt.JWT;
-import com.example.demo.model.persistence.User;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.auth0.jwt.JWTCreator;
+import com.example.demo.model.requests.LoginRequest;
+import com.example.demo.service.JsonMapping;
+import com.example.demo.service.PasswordHashingService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -17,6 +24,8 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.Date;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 // Static imports for JWT signing algorithm and constant values
 import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
@@ -24,33 +33,116 @@ import static com.example.demo.util.Constant.*;
 
 public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilter {
 
+    // A login completes inside this filter and is never dispatched to the servlet, so http.server.requests
+    // never sees it: these timers take its place, tagged by outcome (success, bad_credentials, malformed,
+    // rejected or error). The first covers the whole login up to the completed response, the second only
+    // the authentication that runs on the password hashing pool.
+    public static final String LOGIN_REQUESTS = "login.requests";
+    public static final String LOGIN_HASHING = "login.hashing";
+
+    // Logger to log failures of the asynchronous login
+    private static final Logger logger = LoggerFactory.getLogger(JWTAuthenticationFilter.class);
+
     // Declare an AuthenticationManager to handle the authentication process
     private final AuthenticationManager authenticationManager;
 
-    // Constructor to inject the AuthenticationManager dependency
-    public JWTAuthenticationFilter(AuthenticationManager authenticationManager) {
+    // The bounded pool the BCrypt check of every login runs on
+    private final PasswordHashingService passwordHashingService;
+
+    // The shared JSON layer, which reads the login body with the streaming parser
+    private final JsonMapping jsonMapping;
+
+    // The registry the login timers are recorded in
+    private final MeterRegistry meterRegistry;
+
+    // Constructor to inject the AuthenticationManager, PasswordHashingService, JsonMapping and MeterRegistry dependencies
+    public JWTAuthenticationFilter(AuthenticationManager authenticationManager, PasswordHashingService passwordHashingService,
+                                   JsonMapping jsonMapping, MeterRegistry meterRegistry) {
         this.authenticationManager = authenticationManager;
+        this.passwordHashingService = passwordHashingService;
+        this.jsonMapping = jsonMapping;
+        this.meterRegistry = meterRegistry;
     }
 
-    // Override the attemptAuthentication method to process the incoming authentication request
+    // Override the attemptAuthentication method to process the incoming authentication request.
+    // The BCrypt check runs on the password hashing pool and the response is completed asynchronously,
+    // so null is returned to tell the superclass that authentication has not completed on this thread.
     @Override
     public Authentication attemptAuthentication(HttpServletRequest req,
                                                 HttpServletResponse res) throws AuthenticationException {
+        Timer.Sample login = Timer.start(meterRegistry);
+        LoginRequest credentials;
         try {
-            // Read the incoming JSON request body and map it to a User object
-            User credentials = new ObjectMapper().readValue(req.getInputStream(), User.class);
-
-            // Create an authentication token using the provided username and password from the request
-            // The empty list here represents no authorities (roles) being assigned in this context
-            return authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(
-                            credentials.getUsername(),
-                            credentials.getPassword(),
-                            Collections.emptyList())
-            );
+            // Read the username and password of the incoming JSON request body
+            credentials = jsonMapping.readLoginRequest(req.getInputStream());
         } catch (IOException e) {
-            // If there's an error during JSON deserialization, throw a RuntimeException
-            throw new RuntimeException(e);
+            // A body that is not the expected JSON is a bad request, answered before any BCrypt work
+            logger.debug("Cannot read login request", e);
+            res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            login.stop(meterRegistry.timer(LOGIN_REQUESTS, "outcome", "malformed"));
+            return null;
+        }
+
+        // Create an authentication token using the provided username and password from the request
+        // The empty list here represents no authorities (roles) being assigned in this context
+        UsernamePasswordAuthenticationToken authRequest = new UsernamePasswordAuthenticationToken(
+                credentials.getUsername(),
+                credentials.getPassword(),
+                Collections.emptyList());
+
+        AsyncContext async = req.startAsync(req, res);
+        try {
+            passwordHashingService.submit(() -> authenticate(authRequest))
+                    .whenComplete((auth, error) -> completeLogin(async, login, auth, error));
+        } catch (RejectedExecutionException e) {
+            // The pool is saturated: shed the login instead of queueing it on the request thread
+            logger.warn("Password hashing pool saturated, rejecting login");
+            res.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            async.complete();
+            login.stop(meterRegistry.timer(LOGIN_REQUESTS, "outcome", "rejected"));
+        }
+        return null;
+    }
+
+    // Runs on the password hashing pool: the user lookup and the BCrypt check, timed on their own so that the
+    // time a login waits for a pool thread can be told from the time it spends hashing
+    private Authentication authenticate(UsernamePasswordAuthenticationToken authRequest) {
+        Timer.Sample hashing = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            Authentication auth = authenticationManager.authenticate(authRequest);
+            outcome = "success";
+            return auth;
+        } catch (AuthenticationException e) {
+            outcome = "bad_credentials";
+            throw e;
+        } finally {
+            hashing.stop(meterRegistry.timer(LOGIN_HASHING, "outcome", outcome));
+        }
+    }
+
+    // Writes the outcome of the asynchronous authentication: the JWT on success, 401 on bad credentials
+    private void completeLogin(AsyncContext async, Timer.Sample login, Authentication auth, Throwable error) {
+        HttpServletRequest req = (HttpServletRequest) async.getRequest();
+        HttpServletResponse res = (HttpServletResponse) async.getResponse();
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        String outcome = "error";
+        try {
+            if (cause == null) {
+                successfulAuthentication(req, res, null, auth);
+                outcome = "success";
+            } else if (cause instanceof AuthenticationException) {
+                res.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                outcome = "bad_credentials";
+            } else {
+                logger.error("Login failed", cause);
+                res.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        } catch (IOException | ServletException | RuntimeException e) {
+            logger.error("Cannot write login response", e);
+        } finally {
+            async.complete();
+            login.stop(meterRegistry.timer(LOGIN_REQUESTS, "outcome", outcome));
         }
     }
 
@@ -63,10 +155,20 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
 
         // Create a JWT token using the auth object (which contains the authenticated user's details)
         // The subject of the JWT will be the username of the authenticated user
-        String token = JWT.create()
+        JWTCreator.Builder builder = JWT.create()
                 .withSubject(((org.springframework.security.core.userdetails.User) auth.getPrincipal()).getUsername())  // Set the subject (username) in the token
-                .withExpiresAt(new Date(System.currentTimeMillis() + EXPIRATION_TIME))  // Set the expiration time of the token
-                .sign(HMAC512(SECRET.getBytes()));  // Sign the token using the HMAC512 algorithm with the secret key
+                .withExpiresAt(new Date(System.currentTimeMillis() + EXPIRATION_TIME));  // Set the expiration time of the token
+
+        // Add the user id and cart id as signed claims, so later requests can load them by primary key
+        if (auth.getPrincipal() instanceof AuthenticatedUser.Details) {
+            AuthenticatedUser user = ((AuthenticatedUser.Details) auth.getPrincipal()).getAuthenticatedUser();
+            builder.withClaim(USER_ID_CLAIM, user.getUserId());
+            if (user.getCartId() != null) {
+                builder.withClaim(CART_ID_CLAIM, user.getCartId());
+            }
+        }
+
+        String token = builder.sign(HMAC512(SECRET.getBytes()));  // Sign the token using the HMAC512 algorithm with the secret key
 
         // Add the generated JWT token to the response header with the appropriate prefix
         res.addHeader(HEADER_STRING, TOKEN_PREFIX + token);
@@ -1,15 +1,12 @@
 package com.example.demo.security;
 
 // Import necessary libraries for JWT handling, Spring Security, logging, and servlet processing
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.algorithms.Algorithm;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
-import org.springframework.stereotype.Component;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -21,15 +18,18 @@ import java.util.ArrayList;
 // Static imports for constants like token header and prefix
 import static com.example.demo.util.Constant.*;
 
-@Component  // Mark this class as a Spring Component, so it can be autowired into other parts of the application
 public class JWTAuthenticationVerificationFilter extends BasicAuthenticationFilter {
 
     // Logger to log messages for debugging or tracking token verification process
     private static final Logger logger = LoggerFactory.getLogger(JWTAuthenticationVerificationFilter.class);
 
+    // Shared cache of already verified tokens, so the HMAC check runs once per token rather than once per request
+    private final VerifiedTokenCache verifiedTokenCache;
+
     // Constructor that takes AuthenticationManager as a parameter and passes it to the superclass constructor
-    public JWTAuthenticationVerificationFilter(AuthenticationManager authManager) {
+    public JWTAuthenticationVerificationFilter(AuthenticationManager authManager, VerifiedTokenCache verifiedTokenCache) {
         super(authManager);
+        this.verifiedTokenCache = verifiedTokenCache;
     }
 
     // The doFilterInternal method is called for every HTTP request to filter incoming requests
@@ -39,12 +39,14 @@ public class JWTAuthenticationVerificationFilter extends BasicAuthenticationFilt
                                     FilterChain chain) throws IOException, ServletException {
 
         // Retrieve the Authorization header from the request (where the JWT is usually sent)
+        // The header is a bearer credential, so it is never written to the log
         String header = req.getHeader(HEADER_STRING);
-        logger.debug("Header: {}", header);
 
         // If the header is missing or doesn't start with the correct prefix (e.g., "Bearer "), the token is invalid
         if (header == null || !header.startsWith(TOKEN_PREFIX)) {
-            logger.warn("Invalid header or token prefix.");
+            if (logger.isDebugEnabled()) {
+                logger.debug("Invalid header or token prefix for {}", req.getRequestURI());
+            }
             // If no valid token, continue the filter chain without performing authentication
             chain.doFilter(req, res);
             return;
@@ -64,20 +66,21 @@ public class JWTAuthenticationVerificationFilter extends BasicAuthenticationFilt
     private UsernamePasswordAuthenticationToken getAuthentication(HttpServletRequest request) {
         // Get the token from the Authorization header
         String token = request.getHeader(HEADER_STRING);
-        logger.debug("Token: {}", token);
 
         if (token != null) {
-            // Remove the "Bearer " prefix from the token and verify it using the secret key
-            String user = JWT.require(Algorithm.HMAC512(SECRET.getBytes()))  // Use HMAC512 algorithm with the secret key
-                    .build()  // Build the JWT verifier
-                    .verify(token.replace(TOKEN_PREFIX, ""))  // Verify and decode the token
-                    .getSubject();  // Extract the subject (username) from the decoded token
+            // Remove the "Bearer " prefix from the token and verify it (or reuse a previous verification) with the secret key
+            VerifiedTokenCache.VerifiedToken verified = verifiedTokenCache.verify(token.replace(TOKEN_PREFIX, ""));
+            String user = verified.getSubject();  // Extract the subject (username) from the verified token
 
-            logger.debug("User: {}", user);
+            if (logger.isDebugEnabled()) {
+                logger.debug("User: {}", user);
+            }
 
-            // If the username (subject) is found, return a UsernamePasswordAuthenticationToken to authenticate the user
+            // If the username (subject) is found, return a UsernamePasswordAuthenticationToken to authenticate the user,
+            // with the ids from the token's claims available to the controllers through the principal
             if (user != null) {
-                return new UsernamePasswordAuthenticationToken(user, null, new ArrayList<>());
+                AuthenticatedUser principal = new AuthenticatedUser(user, verified.getUserId(), verified.getCartId());
+                return new UsernamePasswordAuthenticationToken(principal, null, new ArrayList<>());
             }
             // If no user is found (invalid token), return null
             return null;
@@ -0,0 +1,144 @@
+package com.example.demo.security;
+
+// Import necessary classes for JWT verification, the servlet filter and the response statuses
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Static imports for the token header and the endpoints that run BCrypt
+import static com.example.demo.util.Constant.*;
+
+// Turns requests away before any database or BCrypt work: 503 when too many requests are already in flight,
+// 429 when the client address, the login endpoints of that address or the token's user ran out of tokens.
+// Both answers carry a Retry-After header. It runs ahead of JWTAuthenticationFilter in the security chain.
+// A request counts as in flight until it completes, including the asynchronous ones (login, signup, /rx streams)
+// that go on after their request thread has left this filter.
+public class RateLimitingFilter extends OncePerRequestFilter {
+
+    // Logger to log the requests turned away
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitingFilter.class);
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    // The buckets and the in-flight count shared by every request
+    private final RequestRateLimiter rateLimiter;
+
+    // Tokens are verified (or found already verified) to key the user's bucket on a subject that cannot be forged
+    private final VerifiedTokenCache verifiedTokenCache;
+
+    // Requests that are never limited, e.g. the actuator endpoints, which must keep answering under overload
+    private final RequestMatcher exempt;
+
+    public RateLimitingFilter(RequestRateLimiter rateLimiter, VerifiedTokenCache verifiedTokenCache, RequestMatcher exempt) {
+        this.rateLimiter = rateLimiter;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.exempt = exempt;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest req) {
+        return exempt.matches(req);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req,
+                                    HttpServletResponse res,
+                                    FilterChain chain) throws IOException, ServletException {
+        if (!rateLimiter.enter()) {
+            logger.debug("Shedding {} {}, {} requests in flight", req.getMethod(), req.getRequestURI(), rateLimiter.inFlight());
+            reject(res, HttpServletResponse.SC_SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1));
+            return;
+        }
+        try {
+            long wait = acquire(req);
+            if (wait > 0) {
+                logger.debug("Rate limited {} {} from {}", req.getMethod(), req.getRequestURI(), req.getRemoteAddr());
+                reject(res, TOO_MANY_REQUESTS, wait);
+                return;
+            }
+            chain.doFilter(req, res);
+        } finally {
+            if (req.isAsyncStarted()) {
+                // The request thread leaves here, but the BCrypt work or the stream it started is still going on
+                req.getAsyncContext().addListener(new ExitOnCompletion());
+            } else {
+                rateLimiter.exit();
+            }
+        }
+    }
+
+    // Takes a token from every bucket the request draws on, stopping at the first empty one.
+    // Returns 0 when all were granted, otherwise the nanoseconds until the empty bucket has a token again.
+    private long acquire(HttpServletRequest req) {
+        String remoteAddress = req.getRemoteAddr();
+        long wait = rateLimiter.acquireAddress(remoteAddress);
+        if (wait == 0 && "POST".equals(req.getMethod())
+                && (SIGN_IN_URL.equals(req.getServletPath()) || SIGN_UP_URL.equals(req.getServletPath()))) {
+            wait = rateLimiter.acquireLogin(remoteAddress);
+        }
+        String header = req.getHeader(HEADER_STRING);
+        if (wait == 0 && header != null && header.startsWith(TOKEN_PREFIX)) {
+            try {
+                String subject = verifiedTokenCache.verify(header.substring(TOKEN_PREFIX.length())).getSubject();
+                if (subject != null) {
+                    wait = rateLimiter.acquireUser(subject);
+                }
+            } catch (JWTVerificationException e) {
+                // Invalid tokens only draw on the address bucket and are left to JWTAuthenticationVerificationFilter
+            }
+        }
+        return wait;
+    }
+
+    // Takes an asynchronous request out of the in-flight count once, however it ends. onError and onTimeout are
+    // normally followed by onComplete.
+    private class ExitOnCompletion implements AsyncListener {
+
+        private final AtomicBoolean exited = new AtomicBoolean();
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            exit();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            exit();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            exit();
+        }
+
+        // A new asynchronous cycle of the same request drops the listeners of the previous one
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+
+        private void exit() {
+            if (exited.compareAndSet(false, true)) {
+                rateLimiter.exit();
+            }
+        }
+    }
+
+    private static void reject(HttpServletResponse res, int status, long waitNanos) {
+        res.setStatus(status);
+        res.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L))));
+    }
+}
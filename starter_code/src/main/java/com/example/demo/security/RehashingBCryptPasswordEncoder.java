@@ -0,0 +1,35 @@
+package com.example.demo.security;
+
+// Import necessary classes for BCrypt password hashing
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// BCryptPasswordEncoder that reports a stored hash as outdated when it was made with a different strength,
+// so that DaoAuthenticationProvider re-encodes the password on the next successful login
+public class RehashingBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    // $2a$10$... : version, cost, then salt and hash
+    private static final Pattern BCRYPT_COST = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$");
+
+    private final int strength;
+
+    public RehashingBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != strength;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.demo.security;
+
+// Import necessary classes for the bounded bucket maps, the configuration and the metrics
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Token bucket limits per user, per client address and per client address on the login and sign-up endpoints,
+// plus a global cap on the requests in flight, checked by RateLimitingFilter before any other work is done.
+// Each bucket is a single AtomicLong updated by compare-and-set, so no request ever waits on a lock for it.
+// The buckets live in bounded maps that forget a bucket once it has been idle long enough to be full again.
+@Component
+public class RequestRateLimiter implements MeterBinder {
+
+    public static final String LIMITED_REQUESTS = "api.requests.limited";
+    public static final String IN_FLIGHT_REQUESTS = "api.requests.in.flight";
+
+    private final boolean enabled;
+    private final Limit user;
+    private final Limit address;
+    private final Limit login;
+
+    // Requests past the filter and not yet completed, asynchronous ones included; above maxInFlight new requests
+    // are shed (0 means no limit)
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder shed = new LongAdder();
+
+    @Autowired
+    public RequestRateLimiter(@Value("${security.rate-limit.enabled:true}") boolean enabled,
+                              @Value("${security.rate-limit.user.per-second:50}") double userPerSecond,
+                              @Value("${security.rate-limit.user.burst:100}") int userBurst,
+                              @Value("${security.rate-limit.address.per-second:500}") double addressPerSecond,
+                              @Value("${security.rate-limit.address.burst:1000}") int addressBurst,
+                              @Value("${security.rate-limit.login.per-second:10}") double loginPerSecond,
+                              @Value("${security.rate-limit.login.burst:50}") int loginBurst,
+                              @Value("${security.rate-limit.max-keys:100000}") long maxKeys,
+                              @Value("${security.load-shedding.max-in-flight:-1}") int maxInFlight,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                              @Value("${server.tomcat.max-threads:200}") int maxThreads,
+                              @Value("${server.tomcat.max-connections:10000}") int maxConnections) {
+        this(enabled, new Limit("user", userPerSecond, userBurst, maxKeys, System::nanoTime),
+                new Limit("address", addressPerSecond, addressBurst, maxKeys, System::nanoTime),
+                new Limit("login", loginPerSecond, loginBurst, maxKeys, System::nanoTime),
+                maxInFlight >= 0 ? maxInFlight : defaultMaxInFlight(virtualThreads, maxThreads, maxConnections));
+    }
+
+    public RequestRateLimiter(boolean enabled, Limit user, Limit address, Limit login, int maxInFlight) {
+        this.enabled = enabled;
+        this.user = user;
+        this.address = address;
+        this.login = login;
+        this.maxInFlight = maxInFlight;
+    }
+
+    // Takes a token from the user's bucket; returns 0 when granted, otherwise the nanoseconds until one is available
+    public long acquireUser(String username) {
+        return enabled ? user.acquire(username) : 0;
+    }
+
+    // Takes a token from the bucket of the client address
+    public long acquireAddress(String remoteAddress) {
+        return enabled ? address.acquire(remoteAddress) : 0;
+    }
+
+    // Takes a token from the bucket of the client address for the endpoints that run BCrypt
+    public long acquireLogin(String remoteAddress) {
+        return enabled ? login.acquire(remoteAddress) : 0;
+    }
+
+    // Counts the request in flight and returns true, or returns false when the server is already at maxInFlight.
+    // Every true must be followed by exactly one exit().
+    public boolean enter() {
+        if (inFlight.incrementAndGet() > maxInFlight && maxInFlight > 0) {
+            inFlight.decrementAndGet();
+            shed.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public void exit() {
+        inFlight.decrementAndGet();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    // 3/4 of the server's hard limit, so that shedding starts while the server can still take a request and answer
+    // it: Tomcat's request threads, or with virtual threads, which have no such cap, its connections
+    static int defaultMaxInFlight(boolean virtualThreads, int maxThreads, int maxConnections) {
+        return Math.max(1, (virtualThreads ? maxConnections : maxThreads) * 3 / 4);
+    }
+
+    // Publishes the requests turned away per reason and the requests in flight
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Limit limit : new Limit[]{user, address, login}) {
+            FunctionCounter.builder(LIMITED_REQUESTS, limit.rejected, LongAdder::sum)
+                    .description("Requests answered 429 or 503 before reaching the application")
+                    .tag("reason", limit.name)
+                    .register(registry);
+        }
+        FunctionCounter.builder(LIMITED_REQUESTS, shed, LongAdder::sum)
+                .description("Requests answered 429 or 503 before reaching the application")
+                .tag("reason", "overload")
+                .register(registry);
+        Gauge.builder(IN_FLIGHT_REQUESTS, inFlight, AtomicInteger::get)
+                .description("Requests being handled, asynchronous ones included")
+                .register(registry);
+    }
+
+    // One family of buckets, e.g. one bucket per user, refilled at perSecond tokens per second up to burst tokens.
+    // A bucket stores the time at which it will be full again (the "virtual scheduling" form of a token bucket):
+    // a request takes a token by pushing that time one refill interval further, and is refused when this would
+    // push it more than burst intervals ahead of now.
+    public static class Limit {
+
+        private final String name;
+        private final long interval;
+        private final long capacity;
+        private final LongSupplier nanoClock;
+        private final LongAdder rejected = new LongAdder();
+
+        // Key -> time the bucket is full again. An idle bucket is dropped once full, which changes nothing;
+        // past maxKeys the least used ones are dropped early, which can only hand their keys a full bucket.
+        private final Cache<String, AtomicLong> buckets;
+
+        public Limit(String name, double perSecond, int burst, long maxKeys, LongSupplier nanoClock) {
+            this.name = name;
+            this.interval = (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+            this.capacity = interval * Math.max(1, burst);
+            this.nanoClock = nanoClock;
+            this.buckets = Caffeine.newBuilder()
+                    .maximumSize(maxKeys)
+                    .expireAfterAccess(capacity, TimeUnit.NANOSECONDS)
+                    .build();
+        }
+
+        // Returns 0 when a token was taken, otherwise the nanoseconds until the next one
+        public long acquire(String key) {
+            long now = nanoClock.getAsLong();
+            AtomicLong bucket = buckets.get(key, k -> new AtomicLong(now));
+            while (true) {
+                long fullAt = bucket.get();
+                long next = Math.max(fullAt, now) + interval;
+                if (next - now > capacity) {
+                    rejected.increment();
+                    return next - now - capacity;
+                }
+                if (bucket.compareAndSet(fullAt, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        public long size() {
+            buckets.cleanUp();
+            return buckets.estimatedSize();
+        }
+    }
+}
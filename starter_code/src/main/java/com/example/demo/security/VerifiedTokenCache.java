@@ -0,0 +1,135 @@
+package com.example.demo.security;
+
+// Import necessary libraries for JWT verification and the bounded in-memory cache
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+// Static imports for the secret key used to sign the tokens
+import static com.example.demo.util.Constant.CART_ID_CLAIM;
+import static com.example.demo.util.Constant.SECRET;
+import static com.example.demo.util.Constant.USER_ID_CLAIM;
+
+// Caches the outcome of a successful JWT verification so a token is only HMAC-checked once until it expires
+@Component
+public class VerifiedTokenCache implements MeterBinder {
+
+    // A single verifier is thread-safe and reused for every token instead of being rebuilt per request
+    private final JWTVerifier verifier;
+
+    // Token string -> verified subject and expiry, bounded in size and evicted when the token's exp passes
+    private final Cache<String, VerifiedToken> cache;
+
+    @Autowired
+    public VerifiedTokenCache(@Value("${security.jwt.token-cache.max-size:10000}") long maximumSize) {
+        this(JWT.require(Algorithm.HMAC512(SECRET.getBytes())).build(), maximumSize);
+    }
+
+    public VerifiedTokenCache(JWTVerifier verifier, long maximumSize) {
+        this.verifier = verifier;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new TokenExpiry())
+                .recordStats()
+                .build();
+    }
+
+    // Returns the verified token, running the signature check only when the token is not cached yet.
+    // Invalid or expired tokens throw JWTVerificationException and are never cached.
+    public VerifiedToken verify(String token) throws JWTVerificationException {
+        return cache.get(token, this::decode);
+    }
+
+    private VerifiedToken decode(String token) {
+        DecodedJWT jwt = verifier.verify(token);
+        long expiresAt = jwt.getExpiresAt() == null ? Long.MAX_VALUE : jwt.getExpiresAt().getTime();
+        return new VerifiedToken(jwt.getSubject(), jwt.getClaim(USER_ID_CLAIM).asLong(),
+                jwt.getClaim(CART_ID_CLAIM).asLong(), expiresAt);
+    }
+
+    // Fraction of lookups that were answered without running the HMAC check
+    public double hitRate() {
+        return cache.stats().hitRate();
+    }
+
+    // Publishes size, hits, misses and evictions as the cache.* meters tagged cache=verifiedTokens
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "verifiedTokens");
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    // Expires each entry exactly when the token itself expires
+    private static class TokenExpiry implements Expiry<String, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(String token, VerifiedToken verified, long currentTime) {
+            long remaining = verified.getExpiresAt() - System.currentTimeMillis();
+            return remaining <= 0 ? 0 : TimeUnit.MILLISECONDS.toNanos(Math.min(remaining, TimeUnit.DAYS.toMillis(365)));
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, VerifiedToken verified, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String token, VerifiedToken verified, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    // The parts of a verified token the application needs on every request.
+    // The ids are null for tokens issued without the uid and cid claims.
+    public static class VerifiedToken {
+
+        private final String subject;
+        private final Long userId;
+        private final Long cartId;
+        private final long expiresAt;
+
+        public VerifiedToken(String subject, Long userId, Long cartId, long expiresAt) {
+            this.subject = subject;
+            this.userId = userId;
+            this.cartId = cartId;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public Long getCartId() {
+            return cartId;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+}
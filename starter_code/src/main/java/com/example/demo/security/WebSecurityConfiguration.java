@@ -1,7 +1,11 @@
 package com.example.demo.security;
 
 // Import necessary classes for security configuration and services
+import com.example.demo.service.JsonMapping;
+import com.example.demo.service.PasswordHashingService;
 import com.example.demo.service.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
@@ -13,6 +17,7 @@ import org.springframework.security.config.annotation.web.configuration.WebSecur
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 // Static imports for constant URLs for sign-in and sign-up
 import static com.example.demo.util.Constant.SIGN_IN_URL;
@@ -22,14 +27,27 @@ import static com.example.demo.util.Constant.SIGN_UP_URL;
 @EnableWebSecurity
 public class WebSecurityConfiguration extends WebSecurityConfigurerAdapter {
 
-    // Inject the custom UserDetailsService implementation and BCryptPasswordEncoder
+    // Inject the custom UserDetailsService implementation, BCryptPasswordEncoder, the verified token cache, the password hashing pool, the rate limiter, the JSON layer and the meter registry
     private final UserDetailsServiceImpl userDetailsService;
     private final BCryptPasswordEncoder bCryptPasswordEncoder;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final PasswordHashingService passwordHashingService;
+    private final RequestRateLimiter requestRateLimiter;
+    private final JsonMapping jsonMapping;
+    private final MeterRegistry meterRegistry;
 
-    // Constructor to initialize the userDetailsService and bCryptPasswordEncoder
-    public WebSecurityConfiguration(UserDetailsServiceImpl userDetailsService, BCryptPasswordEncoder bCryptPasswordEncoder) {
+    // Constructor to initialize the userDetailsService, bCryptPasswordEncoder, verifiedTokenCache, passwordHashingService, requestRateLimiter, jsonMapping and meterRegistry
+    public WebSecurityConfiguration(UserDetailsServiceImpl userDetailsService, BCryptPasswordEncoder bCryptPasswordEncoder,
+                                    VerifiedTokenCache verifiedTokenCache, PasswordHashingService passwordHashingService,
+                                    RequestRateLimiter requestRateLimiter, JsonMapping jsonMapping,
+                                    MeterRegistry meterRegistry) {
         this.userDetailsService = userDetailsService;
         this.bCryptPasswordEncoder = bCryptPasswordEncoder;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.passwordHashingService = passwordHashingService;
+        this.requestRateLimiter = requestRateLimiter;
+        this.jsonMapping = jsonMapping;
+        this.meterRegistry = meterRegistry;
     }
 
     // Override the authenticationManagerBean method to expose the AuthenticationManager as a Bean
@@ -46,10 +64,12 @@ public class WebSecurityConfiguration extends WebSecurityConfigurerAdapter {
                 .csrf().disable()  // Disable CSRF protection, typically used for stateless API (JWT)
                 .authorizeRequests()  // Begin authorization settings
                 .antMatchers(HttpMethod.POST, SIGN_UP_URL, SIGN_IN_URL).permitAll()  // Allow public access to the sign-up and sign-in endpoints
+                .requestMatchers(EndpointRequest.toAnyEndpoint()).permitAll()  // Actuator endpoints are only bound to the local management port
                 .anyRequest().authenticated()  // Require authentication for any other request
                 .and()
-                .addFilter(new JWTAuthenticationFilter(authenticationManager()))  // Add a filter to handle authentication with JWT (for login requests)
-                .addFilter(new JWTAuthenticationVerificationFilter(authenticationManager()))  // Add a filter to handle authentication verification with JWT (for each request)
+                .addFilterBefore(new RateLimitingFilter(requestRateLimiter, verifiedTokenCache, EndpointRequest.toAnyEndpoint()), UsernamePasswordAuthenticationFilter.class)  // Shed load and rate limit before any login, database or BCrypt work
+                .addFilter(new JWTAuthenticationFilter(authenticationManager(), passwordHashingService, jsonMapping, meterRegistry))  // Add a filter to handle authentication with JWT (for login requests)
+                .addFilter(new JWTAuthenticationVerificationFilter(authenticationManager(), verifiedTokenCache))  // Add a filter to handle authentication verification with JWT (for each request)
                 .sessionManagement()  // Configure session management
                 .sessionCreationPolicy(SessionCreationPolicy.STATELESS);// Use stateless session management (since JWTs are stateless, no server-side session storage)
         http.exceptionHandling() .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED));
@@ -59,8 +79,9 @@ public class WebSecurityConfiguration extends WebSecurityConfigurerAdapter {
     // Configure the AuthenticationManagerBuilder to set up custom user details service and password encoder
     @Override
     public void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.parentAuthenticationManager(authenticationManagerBean())  // Set the parent authentication manager to the one we defined as a Bean
-                .userDetailsService(userDetailsService)  // Set the custom UserDetailsService to retrieve user data
+        // No parent authentication manager: the exposed bean delegates back to this builder, so a failed login
+        // would recurse through it and repeat the BCrypt check until the stack overflows
+        auth.userDetailsService(userDetailsService)  // Set the custom UserDetailsService to retrieve user data
                 .passwordEncoder(bCryptPasswordEncoder);  // Set the BCryptPasswordEncoder to validate passwords
     }
 }
@@ -0,0 +1,91 @@
+package com.example.demo.service;
+
+// Import necessary classes for transactions, optimistic locking and metrics
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+// Applies mutations to a cart under optimistic locking. Each attempt runs in its own transaction; when another
+// request updated the same cart in between, the version check fails on commit and the mutation is replayed on
+// a freshly loaded cart after a short randomized backoff. Different users never wait for each other.
+@Service
+public class CartService {
+
+    // Logger to log messages for debugging or tracking cart contention
+    private static final Logger logger = LoggerFactory.getLogger(CartService.class);
+
+    public static final String CART_CONTENTION = "cart.update.contention";
+
+    private final CartRepository cartRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    // Conflicts that were retried, and updates that still conflicted after the last attempt
+    private final Counter retried;
+    private final Counter exhausted;
+
+    @Autowired
+    public CartService(CartRepository cartRepository, PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry,
+                       @Value("${cart.update.max-attempts:10}") int maxAttempts,
+                       @Value("${cart.update.backoff-ms:5}") long backoffMillis) {
+        this.cartRepository = cartRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoffMillis;
+        this.retried = meterRegistry.counter(CART_CONTENTION, "outcome", "retried");
+        this.exhausted = meterRegistry.counter(CART_CONTENTION, "outcome", "exhausted");
+    }
+
+    // Applies the mutation to the given cart and saves it. The first attempt uses the cart as loaded by the caller,
+    // retries reload it by id. Throws OptimisticLockingFailureException when every attempt conflicted.
+    public Cart update(Cart cart, Consumer<Cart> mutation) {
+        Cart current = cart;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Cart attempted = current;
+                return transactionTemplate.execute(status -> {
+                    mutation.accept(attempted);
+                    return cartRepository.save(attempted);
+                });
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    logger.warn("Cart [{}] still conflicting after {} attempts", cart.getId(), attempt);
+                    throw e;
+                }
+                retried.increment();
+                backoff(attempt);
+                // The failed transaction cleared the persistence context, so this reads the winner's version
+                current = cartRepository.findById(cart.getId()).orElseThrow(() -> e);
+            }
+        }
+    }
+
+    // Exponential backoff with full jitter, so the losers of a conflict do not collide again in lockstep.
+    // The bound stops growing after 64 times the base delay.
+    private void backoff(int attempt) {
+        long bound = backoffMillis << Math.min(attempt - 1, 6);
+        if (bound <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.demo.service;
+
+// Import necessary classes for the repositories, the transaction state and the metrics
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+// Lookups of a popular item or user that many requests make at the same moment share one query and its result
+// (see SingleFlight). The result is the entity loaded by whichever request ran the query, so these lookups are
+// only for callers that do not modify the entity or navigate its lazy associations: an item added to a cart, a
+// user returned as JSON. Paths that change what they load, e.g. the cart of a user, query the repository directly.
+// Inside a read-write transaction the repository is always called directly, since the transaction may see rows
+// that another request's query would not.
+@Service
+public class CoalescedLookups implements MeterBinder {
+
+    public static final String COALESCED = "repository.coalesced";
+
+    private final ItemRepository itemRepository;
+    private final UserRepository userRepository;
+
+    private final SingleFlight<Long, Optional<Item>> itemsById;
+    private final SingleFlight<String, User> usersByUsername;
+
+    @Autowired
+    public CoalescedLookups(ItemRepository itemRepository, UserRepository userRepository,
+                            @Value("${repository.coalescing.wait-timeout:PT2S}") Duration waitTimeout) {
+        this.itemRepository = itemRepository;
+        this.userRepository = userRepository;
+        this.itemsById = new SingleFlight<>(waitTimeout);
+        this.usersByUsername = new SingleFlight<>(waitTimeout);
+    }
+
+    public Optional<Item> findItemById(Long id) {
+        return call(itemsById, id, itemRepository::findById);
+    }
+
+    // The user, or null when there is no such user
+    public User findUserByUsername(String username) {
+        return call(usersByUsername, username, userRepository::findByUsername);
+    }
+
+    private static <K, V> V call(SingleFlight<K, V> flight, K key, Function<K, V> load) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return load.apply(key);
+        }
+        return flight.call(key, load);
+    }
+
+    // Publishes the lookups answered by another request's query (outcome=shared) and the ones that gave up
+    // waiting for it and ran their own (outcome=timeout), tagged like repository.invocations
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        register(registry, itemsById, "itemRepository", "findById");
+        register(registry, usersByUsername, "userRepository", "findByUsername");
+    }
+
+    private static void register(MeterRegistry registry, SingleFlight<?, ?> flight, String repository, String method) {
+        FunctionCounter.builder(COALESCED, flight, SingleFlight::sharedCount)
+                .description("Repository lookups that joined a concurrent identical lookup")
+                .tags("repository", repository, "method", method, "outcome", "shared")
+                .register(registry);
+        FunctionCounter.builder(COALESCED, flight, SingleFlight::timedOutCount)
+                .description("Repository lookups that gave up waiting for a concurrent identical lookup and ran their own")
+                .tags("repository", repository, "method", method, "outcome", "timeout")
+                .register(registry);
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.demo.service;
+
+// Import necessary classes for batched JDBC inserts, transactions, startup events and cache eviction
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Fills the database with generated items, users, carts and orders for load tests, when the application starts
+// with the seed profile (see application-seed.properties for the knobs). Rows are written with plain JDBC batches,
+// one transaction per chunk of users, bypassing Hibernate: the ids of each table are taken as one block from its
+// sequence, which is then moved past the block, so the entities created afterwards never collide with seeded rows.
+// Every seeded user has the same password, hashed once. Items are picked for carts and orders with a Zipf
+// distribution, so a few items are very popular and most are rarely bought, as in a real catalog.
+// Seeding is skipped when the first seeded username already exists, so the profile can stay on for a persistent
+// database. It runs when the application context has been refreshed, before the embedded Tomcat starts accepting
+// connections, so no request can read (and cache) the tables while they are being filled.
+@Service
+@Profile("seed")
+public class DataSeeder implements ApplicationListener<ContextRefreshedEvent> {
+
+    // Logger to log messages for debugging or tracking seeding progress
+    private static final Logger logger = LoggerFactory.getLogger(DataSeeder.class);
+
+    // Words the item names and descriptions are made of; a load driver can search for any of them
+    public static final List<String> ADJECTIVES = Arrays.asList("Round", "Square", "Small", "Large", "Red", "Blue",
+            "Green", "Wooden", "Steel", "Folding", "Portable", "Classic", "Compact", "Deluxe", "Vintage", "Smart");
+    public static final List<String> NOUNS = Arrays.asList("Widget", "Gadget", "Lamp", "Chair", "Table", "Mug",
+            "Kettle", "Backpack", "Notebook", "Speaker", "Clock", "Blanket", "Bottle", "Umbrella", "Wallet", "Jacket");
+    private static final List<String> MATERIALS = Arrays.asList("plastic", "oak", "aluminium", "glass", "cotton",
+            "leather", "ceramic", "bamboo");
+
+    private static final int MAX_QUANTITY = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BCryptPasswordEncoder passwordEncoder;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ItemCatalogCache itemCatalogCache;
+    private final ItemSearchIndex itemSearchIndex;
+    private final ApplicationContext applicationContext;
+
+    private final int items;
+    private final int users;
+    private final double ordersPerUser;
+    private final int maxCartLines;
+    private final int maxOrderLines;
+    private final double itemSkew;
+    private final String usernamePrefix;
+    private final String password;
+    private final int chunkSize;
+    private final long randomSeed;
+
+    @Autowired
+    public DataSeeder(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                      BCryptPasswordEncoder passwordEncoder, EntityManagerFactory entityManagerFactory,
+                      ItemCatalogCache itemCatalogCache, ItemSearchIndex itemSearchIndex,
+                      ApplicationContext applicationContext,
+                      @Value("${seed.items:10000}") int items,
+                      @Value("${seed.users:100000}") int users,
+                      @Value("${seed.orders-per-user:2}") double ordersPerUser,
+                      @Value("${seed.cart-lines:3}") int maxCartLines,
+                      @Value("${seed.order-lines:5}") int maxOrderLines,
+                      @Value("${seed.item-skew:1.0}") double itemSkew,
+                      @Value("${seed.username-prefix:user}") String usernamePrefix,
+                      @Value("${seed.password:password}") String password,
+                      @Value("${seed.chunk-size:1000}") int chunkSize,
+                      @Value("${seed.random-seed:42}") long randomSeed) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.passwordEncoder = passwordEncoder;
+        this.entityManagerFactory = entityManagerFactory;
+        this.itemCatalogCache = itemCatalogCache;
+        this.itemSearchIndex = itemSearchIndex;
+        this.applicationContext = applicationContext;
+        this.items = Math.max(1, items);
+        this.users = Math.max(0, users);
+        this.ordersPerUser = Math.max(0, ordersPerUser);
+        this.maxCartLines = Math.max(0, maxCartLines);
+        this.maxOrderLines = Math.max(1, maxOrderLines);
+        this.itemSkew = Math.max(0, itemSkew);
+        this.usernamePrefix = usernamePrefix;
+        this.password = password;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.randomSeed = randomSeed;
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        // Child contexts, such as the one of the management server, publish their refresh to this context too
+        if (event.getApplicationContext() != applicationContext) {
+            return;
+        }
+        Integer existing = jdbcTemplate.queryForObject("select count(*) from user where username = ?",
+                Integer.class, usernamePrefix + 0);
+        if (existing != null && existing > 0) {
+            logger.info("Skipping seed, user {} already exists", usernamePrefix + 0);
+            return;
+        }
+        long start = System.nanoTime();
+        Random random = new Random(randomSeed);
+        Catalog catalog = seedItems(random);
+        long rows = items + seedUsers(random, catalog);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        logger.info("Seeded {} items and {} users, {} rows in {} s ({} rows/s)", items, users, rows,
+                String.format("%.1f", seconds), Math.round(rows / seconds));
+
+        // Nothing should have been read yet, but drop anything cached from before the seed all the same. The inserts
+        // bypassed Hibernate, so they invalidated none of its regions: entities, natural ids, collections and queries,
+        // including the cached empty results, must all go, before the catalog snapshot and the search index reload.
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+        itemCatalogCache.invalidate();
+        itemSearchIndex.reset();
+    }
+
+    private Catalog seedItems(Random random) {
+        long firstId = reserveIds("item_seq", items);
+        Catalog catalog = new Catalog(firstId, items, itemSkew);
+        List<Object[]> rows = new ArrayList<>(chunkSize);
+        for (int i = 0; i < items; i++) {
+            long id = firstId + i;
+            String adjective = ADJECTIVES.get(random.nextInt(ADJECTIVES.size()));
+            String noun = NOUNS.get(random.nextInt(NOUNS.size()));
+            String material = MATERIALS.get(random.nextInt(MATERIALS.size()));
+            // Log-normal prices, mostly between a few units and a few hundred, as in a real catalog
+            long priceCents = Math.max(99, Math.round(Math.exp(7 + random.nextGaussian()) / 10) * 10 - 1);
+            catalog.priceCents[i] = priceCents;
+            rows.add(new Object[] { id, adjective + " " + noun + " " + id, BigDecimal.valueOf(priceCents, 2),
+                    "A " + adjective.toLowerCase() + " " + noun.toLowerCase() + " made of " + material });
+            if (rows.size() == chunkSize || i == items - 1) {
+                transactionTemplate.execute(status -> {
+                    insert("insert into item (id, name, price, description) values (?, ?, ?, ?)", rows);
+                    return null;
+                });
+                rows.clear();
+            }
+        }
+        return catalog;
+    }
+
+    // Returns the number of rows written for the users, their carts and their orders
+    private long seedUsers(Random random, Catalog catalog) {
+        String passwordHash = passwordEncoder.encode(password);
+        long firstUserId = reserveIds("user_seq", users);
+        long firstCartId = reserveIds("cart_seq", users);
+        // Room for twice the mean number of orders plus one per user, well past what the Poisson draws add up to
+        long orderIds = Math.round(users * ordersPerUser * 2) + users;
+        long firstOrderId = reserveIds("user_order_seq", orderIds);
+        long nextOrderId = firstOrderId;
+        long rows = 0;
+        for (int from = 0; from < users; from += chunkSize) {
+            Chunk chunk = new Chunk();
+            for (int i = from; i < Math.min(from + chunkSize, users); i++) {
+                long cartId = firstCartId + i;
+                long userId = firstUserId + i;
+                chunk.cart(cartId, catalog.lines(random, random.nextInt(maxCartLines + 1)));
+                chunk.users.add(new Object[] { userId, usernamePrefix + i, passwordHash, cartId });
+                for (int orders = poisson(random, ordersPerUser); orders > 0 && nextOrderId < firstOrderId + orderIds; orders--) {
+                    chunk.order(nextOrderId++, userId, catalog.lines(random, 1 + random.nextInt(maxOrderLines)));
+                }
+            }
+            transactionTemplate.execute(status -> {
+                insert("insert into cart (id, total_cents, version) values (?, ?, 0)", chunk.carts);
+                insert("insert into cart_line (cart_id, line_index, item_id, quantity, unit_price_cents) "
+                        + "values (?, ?, ?, ?, ?)", chunk.cartLines);
+                insert("insert into user (id, username, password, cart_id) values (?, ?, ?, ?)", chunk.users);
+                insert("insert into user_order (id, user_id, total_cents) values (?, ?, ?)", chunk.orders);
+                insert("insert into user_order_line (order_id, line_index, item_id, quantity, unit_price_cents) "
+                        + "values (?, ?, ?, ?, ?)", chunk.orderLines);
+                return null;
+            });
+            rows += chunk.size();
+            if ((from / chunkSize) % 100 == 99) {
+                logger.info("Seeded {} of {} users", from + chunkSize, users);
+            }
+        }
+        return rows;
+    }
+
+    // Takes count ids from the sequence: with pooled-lo ids a sequence value is the first id of a block of
+    // ids handed out by the application, so restarting the sequence after our block keeps the two apart
+    private long reserveIds(String sequence, long count) {
+        Long first = jdbcTemplate.queryForObject("select next value for " + sequence, Long.class);
+        jdbcTemplate.execute("alter sequence " + sequence + " restart with " + (first + count));
+        return first;
+    }
+
+    private void insert(String sql, List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows);
+        }
+    }
+
+    // Poisson distributed count with the given mean (Knuth's method, fine for small means)
+    private static int poisson(Random random, double mean) {
+        double limit = Math.exp(-mean);
+        double product = random.nextDouble();
+        int count = 0;
+        while (product > limit) {
+            product *= random.nextDouble();
+            count++;
+        }
+        return count;
+    }
+
+    // Ids and prices of the seeded items, with the cumulative Zipf weights used to pick them
+    private static final class Catalog {
+
+        private final long firstId;
+        private final long[] priceCents;
+        private final double[] cumulative;
+
+        private Catalog(long firstId, int size, double skew) {
+            this.firstId = firstId;
+            this.priceCents = new long[size];
+            this.cumulative = new double[size];
+            double total = 0;
+            for (int rank = 0; rank < size; rank++) {
+                total += 1 / Math.pow(rank + 1, skew);
+                cumulative[rank] = total;
+            }
+        }
+
+        // Item index picked with probability proportional to 1 / (rank + 1)^skew
+        private int pick(Random random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[cumulative.length - 1]);
+            return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+        }
+
+        // Item id, quantity and unit price of each of count lines
+        private long[][] lines(Random random, int count) {
+            long[][] lines = new long[count][];
+            for (int i = 0; i < count; i++) {
+                int index = pick(random);
+                lines[i] = new long[] { firstId + index, 1 + random.nextInt(MAX_QUANTITY), priceCents[index] };
+            }
+            return lines;
+        }
+    }
+
+    // Rows of one chunk of users, written in one transaction
+    private static final class Chunk {
+
+        private final List<Object[]> carts = new ArrayList<>();
+        private final List<Object[]> cartLines = new ArrayList<>();
+        private final List<Object[]> users = new ArrayList<>();
+        private final List<Object[]> orders = new ArrayList<>();
+        private final List<Object[]> orderLines = new ArrayList<>();
+
+        private void cart(long cartId, long[][] lines) {
+            carts.add(new Object[] { cartId, addLines(cartLines, cartId, lines) });
+        }
+
+        private void order(long orderId, long userId, long[][] lines) {
+            orders.add(new Object[] { orderId, userId, addLines(orderLines, orderId, lines) });
+        }
+
+        private long size() {
+            return carts.size() + cartLines.size() + users.size() + orders.size() + orderLines.size();
+        }
+
+        // Returns the total of the lines in cents
+        private static long addLines(List<Object[]> rows, long ownerId, long[][] lines) {
+            long total = 0;
+            for (int i = 0; i < lines.length; i++) {
+                long[] line = lines[i];
+                rows.add(new Object[] { ownerId, i, line[0], (int) line[1], line[2] });
+                total += line[1] * line[2];
+            }
+            return total;
+        }
+    }
+}
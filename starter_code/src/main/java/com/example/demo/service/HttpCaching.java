@@ -0,0 +1,70 @@
+package com.example.demo.service;
+
+// Import necessary classes for HTTP headers, responses and configuration lookup
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Conditional GET support for the read endpoints. A resource's strong ETag is built from a version counter that is
+// bumped on every write to the data behind it, so an If-None-Match check needs neither a query nor serialization.
+// The ETag also carries the startup time, because the counters start over when the application restarts.
+// Each endpoint's Cache-Control value is read from the http.cache-control.<endpoint> property.
+@Service
+public class HttpCaching {
+
+    // Used for endpoints without a configured policy: caches may store the response but must revalidate it
+    public static final String DEFAULT_CACHE_CONTROL = "no-cache";
+
+    private final Environment environment;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<String, String> policies = new ConcurrentHashMap<>();
+
+    public HttpCaching(Environment environment) {
+        this.environment = environment;
+    }
+
+    // Strong ETag for the given version of a resource
+    public String etag(String resource, long version) {
+        return "\"" + resource + "-" + epoch + "-" + version + "\"";
+    }
+
+    // True when the If-None-Match header lists the ETag. As required for If-None-Match, weak validators (W/"...")
+    // compare equal to the strong ETag with the same value. "*" is not honoured, since answering it would need
+    // to know whether the resource exists; such requests simply get the full response.
+    public boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 200 response builder carrying the ETag and the endpoint's Cache-Control policy
+    public ResponseEntity.BodyBuilder ok(String endpoint, String etag) {
+        return ResponseEntity.ok().eTag(etag).header(HttpHeaders.CACHE_CONTROL, cacheControl(endpoint));
+    }
+
+    // 304 response, which must repeat the ETag and Cache-Control a 200 would have sent
+    public <T> ResponseEntity<T> notModified(String endpoint, String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag)
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl(endpoint)).build();
+    }
+
+    public String cacheControl(String endpoint) {
+        return policies.computeIfAbsent(endpoint,
+                name -> environment.getProperty("http.cache-control." + name, DEFAULT_CACHE_CONTROL));
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.demo.service;
+
+// Import necessary classes for the catalog snapshot, repository access and counters
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Read-through cache of the whole item catalog. Reads are served from an immutable snapshot
+// published through a volatile field, so they need neither a DB round trip nor a lock.
+@Service
+public class ItemCatalogCache implements MeterBinder {
+
+    // Logger to log messages for debugging or tracking catalog reloads
+    private static final Logger logger = LoggerFactory.getLogger(ItemCatalogCache.class);
+
+    private final ItemRepository itemRepository;
+
+    // Current snapshot, or null when it has been invalidated and must be reloaded on the next read
+    private volatile Snapshot snapshot;
+
+    // Bumped on every invalidation so a reload that raced with a write is never published
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Lock loadLock = new ReentrantLock();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ItemCatalogCache(ItemRepository itemRepository) {
+        this.itemRepository = itemRepository;
+    }
+
+    // Returns every item of the catalog
+    public List<Item> findAll() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            hits.incrementAndGet();
+            return current.items;
+        }
+        misses.incrementAndGet();
+        return load().items;
+    }
+
+    // Returns the item with the given id, falling back to the database when the snapshot does not know it
+    public Optional<Item> findById(Long id) {
+        Item item = snapshot().byId.get(id);
+        if (item != null) {
+            hits.incrementAndGet();
+            return Optional.of(item);
+        }
+        misses.incrementAndGet();
+        Optional<Item> loaded = itemRepository.findById(id);
+        if (loaded.isPresent()) {
+            // The item exists but the snapshot missed it, so the snapshot is stale
+            invalidate();
+        }
+        return loaded;
+    }
+
+    // Returns the items with the given name, or an empty list. The snapshot holds every item and is dropped on every
+    // write, so a name it does not know does not exist, and probing unknown names never reaches the database.
+    public List<Item> findByName(String name) {
+        hits.incrementAndGet();
+        return snapshot().byName.getOrDefault(name, Collections.emptyList());
+    }
+
+    // Drops the snapshot immediately and, when called inside a transaction, once more after it commits
+    // so that a reload running concurrently with the write cannot keep pre-commit data
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    generation.incrementAndGet();
+                    snapshot = null;
+                }
+            });
+        }
+    }
+
+    // Changes whenever the catalog may have changed, so it can serve as the version of everything read from it
+    public long getVersion() {
+        return generation.get();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    // Publishes the hit and miss counts with the same names and tags as the Caffeine backed caches
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", hits, AtomicLong::get)
+                .tags("cache", "itemCatalog", "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", misses, AtomicLong::get)
+                .tags("cache", "itemCatalog", "result", "miss")
+                .register(registry);
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        return current != null ? current : load();
+    }
+
+    // Loads the catalog once even when many readers miss at the same time. The lock is held across the query, so it
+    // is a ReentrantLock rather than a monitor: a virtual thread blocked in a synchronized method pins its carrier.
+    private Snapshot load() {
+        loadLock.lock();
+        try {
+            Snapshot current = snapshot;
+            if (current != null) {
+                return current;
+            }
+            long loadedGeneration = generation.get();
+            Snapshot loaded = new Snapshot(itemRepository.findAll());
+            if (generation.get() == loadedGeneration) {
+                snapshot = loaded;
+            }
+            logger.debug("Loaded item catalog snapshot with {} items", loaded.items.size());
+            return loaded;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    // Immutable view of the catalog with its id and name indexes
+    private static final class Snapshot {
+
+        private final List<Item> items;
+        private final Map<Long, Item> byId;
+        private final Map<String, List<Item>> byName;
+
+        private Snapshot(List<Item> items) {
+            Map<Long, Item> byId = new HashMap<>();
+            Map<String, List<Item>> byName = new HashMap<>();
+            for (Item item : items) {
+                byId.put(item.getId(), item);
+                byName.computeIfAbsent(item.getName(), name -> new ArrayList<>()).add(item);
+            }
+            byName.replaceAll((name, named) -> Collections.unmodifiableList(named));
+            this.items = Collections.unmodifiableList(new ArrayList<>(items));
+            this.byId = byId;
+            this.byName = byName;
+        }
+    }
+}
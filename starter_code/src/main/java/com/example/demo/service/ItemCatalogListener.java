@@ -0,0 +1,38 @@
+package com.example.demo.service;
+
+// Import necessary classes for JPA lifecycle callbacks and dependency injection
+import com.example.demo.model.persistence.Item;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+// JPA entity listener that keeps the ItemCatalogCache and the ItemSearchIndex consistent with every write to the item table
+@Component
+public class ItemCatalogListener {
+
+    // Lazy, because Hibernate creates its entity listeners while the repositories the cache needs are still being built
+    @Lazy
+    @Autowired
+    private ItemCatalogCache itemCatalogCache;
+
+    @Lazy
+    @Autowired
+    private ItemSearchIndex itemSearchIndex;
+
+    @PostPersist
+    @PostUpdate
+    public void itemSaved(Item item) {
+        itemCatalogCache.invalidate();
+        itemSearchIndex.update(item);
+    }
+
+    @PostRemove
+    public void itemRemoved(Item item) {
+        itemCatalogCache.invalidate();
+        itemSearchIndex.remove(item.getId());
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.demo.service;
+
+// Import necessary classes for the inverted index, locking and transaction callbacks
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+// In-memory inverted index over the name and description of every item, so catalog search never touches the database.
+// Text is split into lower-cased letter/digit terms; the sorted term dictionary maps each term to the items containing
+// it with a per-item weight (name terms count NAME_WEIGHT per occurrence, description terms DESCRIPTION_WEIGHT).
+// The index is built from the item table on the first search and then kept up to date one item at a time by
+// ItemCatalogListener, once the writing transaction has committed.
+@Service
+public class ItemSearchIndex implements MeterBinder {
+
+    // Logger to log messages for debugging or tracking index builds
+    private static final Logger logger = LoggerFactory.getLogger(ItemSearchIndex.class);
+
+    static final float NAME_WEIGHT = 3f;
+    static final float DESCRIPTION_WEIGHT = 1f;
+
+    // A query term that is only a prefix of an indexed term scores this fraction of an exact match
+    static final float PREFIX_FACTOR = 0.5f;
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ItemRepository itemRepository;
+
+    // Guards documents and postings: searches share the read lock, item updates take the write lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Document> documents = new HashMap<>();
+    private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+
+    // Set once the index has been loaded from the item table; updates arriving before that are already in the load
+    private volatile boolean built;
+
+    public ItemSearchIndex(ItemRepository itemRepository) {
+        this.itemRepository = itemRepository;
+    }
+
+    // Returns up to limit items matching every term of the query, best first. The last characters of a term may be
+    // left out: "wid squ" finds "Square Widget". Items score the sum over the query terms of their weight for the
+    // matching indexed term times its inverse document frequency; ties are broken by item id.
+    public List<Item> search(String query, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (terms.isEmpty() || limit < 1) {
+            return Collections.emptyList();
+        }
+        ensureBuilt();
+        lock.readLock().lock();
+        try {
+            Map<Long, Float> scores = null;
+            for (String term : terms) {
+                Map<Long, Float> termScores = match(term);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    scores.keySet().retainAll(termScores.keySet());
+                    scores.replaceAll((id, score) -> score + termScores.get(id));
+                }
+                if (scores.isEmpty()) {
+                    return Collections.emptyList();
+                }
+            }
+            return top(scores, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Adds or replaces the item in the index once the current transaction commits, or right away outside of one
+    public void update(Item item) {
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                if (built) {
+                    unindex(item.getId());
+                    index(item);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // Removes the item from the index once the current transaction commits, or right away outside of one
+    public void remove(Long itemId) {
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                if (built) {
+                    unindex(itemId);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // Drops the whole index, e.g. after items were written with plain JDBC; the next search builds it again
+    public void reset() {
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postings.clear();
+            built = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Publishes the number of indexed items and distinct terms
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("item.search.index.size", this, ItemSearchIndex::size)
+                .tag("content", "items")
+                .register(registry);
+        Gauge.builder("item.search.index.size", this, ItemSearchIndex::termCount)
+                .tag("content", "terms")
+                .register(registry);
+    }
+
+    // Lower-cased terms of the text in order, split on anything that is not a letter or a digit
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                terms.add(token);
+            }
+        }
+        return terms;
+    }
+
+    private int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Scores of the items containing the term or a longer term starting with it; an item matching several
+    // indexed terms keeps its best one
+    private Map<Long, Float> match(String term) {
+        Map<Long, Float> scores = new HashMap<>();
+        int documentCount = documents.size();
+        for (Map.Entry<String, Map<Long, Float>> entry
+                : postings.subMap(term, true, term + Character.MAX_VALUE, false).entrySet()) {
+            Map<Long, Float> items = entry.getValue();
+            float factor = entry.getKey().length() == term.length() ? 1f : PREFIX_FACTOR;
+            float idf = (float) Math.log(1 + (double) documentCount / items.size());
+            for (Map.Entry<Long, Float> posting : items.entrySet()) {
+                scores.merge(posting.getKey(), posting.getValue() * factor * idf, Math::max);
+            }
+        }
+        return scores;
+    }
+
+    // The limit best scored items, kept in a bounded heap whose head is the worst of them
+    private List<Item> top(Map<Long, Float> scores, int limit) {
+        Comparator<Map.Entry<Long, Float>> ranking = Map.Entry.<Long, Float>comparingByValue()
+                .reversed()
+                .thenComparing(Map.Entry.comparingByKey());
+        PriorityQueue<Map.Entry<Long, Float>> best = new PriorityQueue<>(limit + 1, ranking.reversed());
+        for (Map.Entry<Long, Float> entry : scores.entrySet()) {
+            best.add(entry);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<Map.Entry<Long, Float>> ranked = new ArrayList<>(best);
+        ranked.sort(ranking);
+        List<Item> items = new ArrayList<>(ranked.size());
+        for (Map.Entry<Long, Float> entry : ranked) {
+            items.add(documents.get(entry.getKey()).item);
+        }
+        return items;
+    }
+
+    // Loads every item once, even when many searches arrive before the index exists
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                for (Item item : itemRepository.findAll()) {
+                    index(item);
+                }
+                built = true;
+                logger.debug("Built item search index with {} items and {} terms", documents.size(), postings.size());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Called with the write lock held
+    private void index(Item item) {
+        Map<String, Float> weights = new HashMap<>();
+        for (String term : tokenize(item.getName())) {
+            weights.merge(term, NAME_WEIGHT, Float::sum);
+        }
+        for (String term : tokenize(item.getDescription())) {
+            weights.merge(term, DESCRIPTION_WEIGHT, Float::sum);
+        }
+        documents.put(item.getId(), new Document(item, weights.keySet()));
+        for (Map.Entry<String, Float> weight : weights.entrySet()) {
+            postings.computeIfAbsent(weight.getKey(), term -> new HashMap<>()).put(item.getId(), weight.getValue());
+        }
+    }
+
+    // Called with the write lock held
+    private void unindex(Long itemId) {
+        Document document = documents.remove(itemId);
+        if (document == null) {
+            return;
+        }
+        for (String term : document.terms) {
+            Map<Long, Float> items = postings.get(term);
+            items.remove(itemId);
+            if (items.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // An indexed item and the terms it was indexed under, so it can be taken out of the postings again
+    private static final class Document {
+
+        private final Item item;
+        private final Set<String> terms;
+
+        private Document(Item item, Set<String> terms) {
+            this.item = item;
+            this.terms = terms;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.demo.service;
+
+// Import necessary classes for the shared ObjectMapper, the streaming parser and the cached writers
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.requests.LoginRequest;
+import com.example.demo.model.responses.CartView;
+import com.example.demo.model.responses.OrderView;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// JSON for the code that reads or writes bodies itself rather than through Spring MVC, on the application's one
+// ObjectMapper as configured by Spring Boot (and by JacksonConfiguration). Writers are created once per type,
+// those of the hot response types up front, and the login body is read with the streaming parser, without
+// binding it into an entity.
+@Service
+public class JsonMapping {
+
+    private final ObjectMapper objectMapper;
+
+    private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    public JsonMapping(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        for (Class<?> type : new Class<?>[]{CartView.class, Item.class, OrderView.class}) {
+            writerFor(type);
+        }
+    }
+
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    // A writer of the type whose root serializer is already resolved; writers are immutable and thread-safe
+    public ObjectWriter writerFor(Class<?> type) {
+        return writers.computeIfAbsent(type, objectMapper::writerFor);
+    }
+
+    // Reads {"username": ..., "password": ...}, ignoring any other field. Throws IOException on malformed JSON.
+    public LoginRequest readLoginRequest(InputStream in) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+            LoginRequest login = new LoginRequest();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("username".equals(field)) {
+                    login.setUsername(readString(parser));
+                } else if ("password".equals(field)) {
+                    login.setPassword(readString(parser));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return login;
+        }
+    }
+
+    private static String readString(JsonParser parser) throws IOException {
+        if (parser.currentToken().isStructStart()) {
+            throw new JsonParseException(parser, "Expected a string for " + parser.getCurrentName());
+        }
+        return parser.getValueAsString();
+    }
+}
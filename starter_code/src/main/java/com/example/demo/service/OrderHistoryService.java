@@ -0,0 +1,65 @@
+package com.example.demo.service;
+
+// Import necessary classes for reading order history projections and transaction handling
+import com.example.demo.model.persistence.repositories.OrderLineRow;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.responses.LineView;
+import com.example.demo.model.responses.OrderHistoryPage;
+import com.example.demo.model.responses.OrderView;
+import com.example.demo.model.responses.UserRef;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.demo.util.Constant.MAX_PAGE_SIZE;
+
+// Reads a user's orders as response views, never as entities: each call is one query returning only the rendered
+// columns (see OrderRepository.findLineRows), so nothing is loaded lazily while the response is serialized.
+// Pages use keyset pagination: each page continues after the id of the previous page's last order,
+// so deep pages cost the same as the first one.
+@Service
+public class OrderHistoryService {
+
+    private final OrderRepository orderRepository;
+
+    public OrderHistoryService(OrderRepository orderRepository) {
+        this.orderRepository = orderRepository;
+    }
+
+    // Returns every order of the user, oldest first
+    @Transactional(readOnly = true)
+    public List<OrderView> history(long userId) {
+        return toOrders(orderRepository.findLineRows(userId, 0L, Integer.MAX_VALUE));
+    }
+
+    // Returns up to size orders with an id greater than cursor
+    @Transactional(readOnly = true)
+    public OrderHistoryPage page(long userId, Long cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        List<OrderView> orders = toOrders(orderRepository.findLineRows(userId, cursor == null ? 0L : cursor, pageSize));
+        Long nextCursor = orders.size() < pageSize ? null : orders.get(orders.size() - 1).getId();
+        return new OrderHistoryPage(orders, nextCursor);
+    }
+
+    // Folds the rows, ordered by order id and line index, into one view per order
+    static List<OrderView> toOrders(List<OrderLineRow> rows) {
+        List<OrderView> orders = new ArrayList<>();
+        OrderView order = null;
+        UserRef user = null;
+        for (OrderLineRow row : rows) {
+            if (order == null || !order.getId().equals(row.getOrderId())) {
+                if (user == null) {
+                    user = new UserRef(row.getUserId(), row.getUsername());
+                }
+                order = new OrderView(row.getOrderId(), new ArrayList<>(), user, row.getTotalCents());
+                orders.add(order);
+            }
+            if (row.getItemId() != null) {
+                order.getLines().add(new LineView(row.getItemId(), row.getQuantity(), row.getUnitPriceCents()));
+            }
+        }
+        return orders;
+    }
+}
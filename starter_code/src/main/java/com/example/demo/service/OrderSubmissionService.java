@@ -0,0 +1,65 @@
+package com.example.demo.service;
+
+// Import necessary classes for persisting orders in JDBC batches
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Turns many carts into orders in one transaction. Users and their carts are loaded a chunk at a time, and after
+// each chunk the persistence context is flushed and cleared: the orders of a chunk reach the database as a few
+// JDBC batches (hibernate.jdbc.batch_size with ordered inserts), their ids come from the pooled sequence without
+// a round trip per row, and the memory held by the session stays flat however many carts are submitted.
+@Service
+public class OrderSubmissionService {
+
+    private final UserRepository userRepository;
+    private final OrderRepository orderRepository;
+    private final EntityManager entityManager;
+    private final int batchSize;
+
+    @Autowired
+    public OrderSubmissionService(UserRepository userRepository, OrderRepository orderRepository,
+                                  EntityManager entityManager,
+                                  @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.userRepository = userRepository;
+        this.orderRepository = orderRepository;
+        this.entityManager = entityManager;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    // Submits the cart of every named user as an order and returns the orders, detached, in the order of the
+    // usernames. Unknown usernames are skipped, so callers that need all of them to exist should check first.
+    @Transactional
+    public List<UserOrder> submitAll(List<String> usernames) {
+        List<UserOrder> orders = new ArrayList<>(usernames.size());
+        for (int from = 0; from < usernames.size(); from += batchSize) {
+            List<String> chunk = usernames.subList(from, Math.min(from + batchSize, usernames.size()));
+            // One query for the users and their carts; the cart lines of the chunk follow in one batched query
+            // (see @BatchSize on Cart.lines) on first access. The query returns the users in no particular order.
+            Map<String, User> users = new HashMap<>();
+            for (User user : userRepository.findWithCartByUsernameIn(chunk)) {
+                users.put(user.getUsername(), user);
+            }
+            for (String username : chunk) {
+                User user = users.get(username);
+                if (user != null) {
+                    orders.add(orderRepository.save(UserOrder.createFromCart(user.getCart())));
+                }
+            }
+            entityManager.flush();
+            entityManager.clear();
+        }
+        return orders;
+    }
+}
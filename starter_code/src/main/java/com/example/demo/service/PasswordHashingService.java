@@ -0,0 +1,89 @@
+package com.example.demo.service;
+
+// Import necessary classes for the worker pool, password hashing and metrics
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Runs the BCrypt work of signup and login on a small fixed pool with a bounded queue, so a burst of
+// password hashing can never take the Tomcat request threads away from the other endpoints.
+// When the queue is full the work is rejected and callers answer 503 instead of queueing without limit.
+@Service
+public class PasswordHashingService implements MeterBinder, DisposableBean {
+
+    private final BCryptPasswordEncoder passwordEncoder;
+
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    @Autowired
+    public PasswordHashingService(BCryptPasswordEncoder passwordEncoder,
+                                  @Value("${security.password-hashing.threads:0}") int threads,
+                                  @Value("${security.password-hashing.queue-capacity:64}") int queueCapacity) {
+        this.passwordEncoder = passwordEncoder;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new HashingThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Hashes the raw password on the pool. Throws RejectedExecutionException when the pool is saturated.
+    public CompletableFuture<String> encode(CharSequence rawPassword) {
+        return submit(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    // Runs any work that verifies or hashes a password on the pool, e.g. a whole login authentication.
+    // Throws RejectedExecutionException when the pool is saturated.
+    public <T> CompletableFuture<T> submit(Supplier<T> work) {
+        try {
+            return CompletableFuture.supplyAsync(work, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    // Publishes the pool's active threads, queue size and completed tasks, plus the rejected submissions
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new ExecutorServiceMetrics(executor, "passwordHashing", Collections.emptyList()).bindTo(registry);
+        FunctionCounter.builder("executor.rejected", rejected, AtomicLong::get)
+                .tag("name", "passwordHashing")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    // Names the workers so they are recognisable in thread dumps and logs
+    private static class HashingThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "password-hashing-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
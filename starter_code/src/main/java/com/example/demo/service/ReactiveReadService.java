@@ -0,0 +1,107 @@
+package com.example.demo.service;
+
+// Import necessary classes for the reactive streams and the worker pool of the blocking queries
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.responses.OrderView;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static com.example.demo.util.Constant.MAX_PAGE_SIZE;
+
+// Reads of the /rx API as reactive streams with backpressure. H2 has no non-blocking driver for this Spring
+// version, so each stream is a sequence of keyset page queries run on a small pool of JDBC threads: a stream reads
+// at most one page ahead of its subscriber, and no thread or connection is held between pages. A slow reader
+// therefore costs an open socket and two pages of rows, whatever the size of the result.
+@Service
+public class ReactiveReadService implements DisposableBean {
+
+    private final ItemRepository itemRepository;
+    private final UserRepository userRepository;
+    private final OrderHistoryService orderHistoryService;
+
+    private final ExecutorService jdbcExecutor;
+    private final Scheduler jdbcScheduler;
+
+    @Autowired
+    public ReactiveReadService(ItemRepository itemRepository, UserRepository userRepository,
+                               OrderHistoryService orderHistoryService,
+                               @Value("${rx.jdbc-threads:4}") int jdbcThreads) {
+        this.itemRepository = itemRepository;
+        this.userRepository = userRepository;
+        this.orderHistoryService = orderHistoryService;
+        this.jdbcExecutor = Executors.newFixedThreadPool(Math.max(1, jdbcThreads), new JdbcThreadFactory());
+        this.jdbcScheduler = Schedulers.fromExecutorService(jdbcExecutor);
+    }
+
+    // Every item of the catalog, in id order
+    public Flux<Item> items() {
+        return pages(cursor -> itemRepository.findByIdGreaterThan(cursor,
+                PageRequest.of(0, MAX_PAGE_SIZE, Sort.by("id"))), Item::getId);
+    }
+
+    // The id of the named user, or an empty Mono when there is no such user
+    public Mono<Long> findUserId(String username) {
+        return Mono.fromCallable(() -> userRepository.findIdByUsername(username)).subscribeOn(jdbcScheduler);
+    }
+
+    // Every order of the user, oldest first
+    public Flux<OrderView> orderHistory(long userId) {
+        return pages(cursor -> orderHistoryService.page(userId, cursor, MAX_PAGE_SIZE).getOrders(), OrderView::getId);
+    }
+
+    @Override
+    public void destroy() {
+        jdbcScheduler.dispose();
+        jdbcExecutor.shutdown();
+    }
+
+    // Pages of MAX_PAGE_SIZE rows, each one fetched on a JDBC thread; a page shorter than MAX_PAGE_SIZE is the last one.
+    // Each page is handed over to a parallel thread, which asks for the next one as a JDBC task of its own: a reader
+    // whose socket keeps accepting rows does not hold on to a JDBC thread while the other streams wait for a page.
+    private <T> Flux<T> pages(Function<Long, List<T>> fetch, Function<T, Long> key) {
+        return Flux.<List<T>, Long>generate(() -> 0L, (cursor, sink) -> {
+                    List<T> page = fetch.apply(cursor);
+                    if (!page.isEmpty()) {
+                        sink.next(page);
+                    }
+                    if (page.size() < MAX_PAGE_SIZE) {
+                        sink.complete();
+                        return cursor;
+                    }
+                    return key.apply(page.get(page.size() - 1));
+                })
+                .subscribeOn(jdbcScheduler)
+                .publishOn(Schedulers.parallel(), 1)
+                .concatMapIterable(Function.identity(), 1);
+    }
+
+    // Names the JDBC threads rx-jdbc-1, rx-jdbc-2, ...
+    private static class JdbcThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "rx-jdbc-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo.service;
+
+// Import necessary classes for proxying the repositories and recording metrics
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+// Wraps every Spring Data repository in a proxy that times each call as repository.invocations,
+// tagged with the repository, the method and whether it threw
+@Component
+public class RepositoryMetrics implements BeanPostProcessor {
+
+    public static final String REPOSITORY_INVOCATIONS = "repository.invocations";
+
+    // Resolved on first use: post-processors are created before the registry and must not pull it in early
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public RepositoryMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof Repository)) {
+            return bean;
+        }
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.addAdvice(new TimingInterceptor(beanName));
+        return proxyFactory.getProxy(bean.getClass().getClassLoader());
+    }
+
+    private class TimingInterceptor implements MethodInterceptor {
+
+        private final String repository;
+
+        private TimingInterceptor(String repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            MeterRegistry registry = meterRegistry.getIfAvailable();
+            if (registry == null) {
+                return invocation.proceed();
+            }
+            Timer.Sample sample = Timer.start(registry);
+            String outcome = "success";
+            try {
+                return invocation.proceed();
+            } catch (Throwable e) {
+                outcome = e.getClass().getSimpleName();
+                throw e;
+            } finally {
+                sample.stop(registry.timer(REPOSITORY_INVOCATIONS,
+                        "repository", repository,
+                        "method", invocation.getMethod().getName(),
+                        "outcome", outcome));
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.demo.service;
+
+// Import necessary classes for recording metrics
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+// Counts the requests the controllers turn away, tagged by endpoint, status and reason, so that a load test
+// can tell "user not found" from "item not found" without reading the logs.
+// Latency of every endpoint is timed by Spring Boot itself as http.server.requests.
+@Service
+public class RequestMetrics {
+
+    public static final String REJECTED_REQUESTS = "api.requests.rejected";
+
+    private final MeterRegistry meterRegistry;
+
+    public RequestMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Records one rejected request, e.g. rejected("cart.addToCart", HttpStatus.NOT_FOUND, "item_not_found")
+    public void rejected(String endpoint, HttpStatus status, String reason) {
+        meterRegistry.counter(REJECTED_REQUESTS,
+                "endpoint", endpoint,
+                "status", String.valueOf(status.value()),
+                "reason", reason).increment();
+    }
+}
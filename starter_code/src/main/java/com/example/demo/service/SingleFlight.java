@@ -0,0 +1,73 @@
+package com.example.demo.service;
+
+// Import necessary classes for sharing the result of one call between concurrent callers
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// Runs at most one call per key at a time: the first caller of a key runs it on its own thread, and the callers
+// that ask for the same key while it runs wait for it and get the same result, or the same exception.
+// Nothing is kept once the call returns, so a later caller always runs a fresh one. A caller that waited longer
+// than waitTimeout stops waiting and runs the call itself.
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long waitTimeoutNanos;
+
+    private final LongAdder shared = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    public SingleFlight(Duration waitTimeout) {
+        this.waitTimeoutNanos = waitTimeout.toNanos();
+    }
+
+    public V call(K key, Function<K, V> load) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+        if (running == null) {
+            try {
+                V value = load.apply(key);
+                flight.complete(value);
+                return value;
+            } catch (RuntimeException | Error e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, flight);
+            }
+        }
+        try {
+            V value = running.get(waitTimeoutNanos, TimeUnit.NANOSECONDS);
+            shared.increment();
+            return value;
+        } catch (ExecutionException e) {
+            shared.increment();
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw (Error) e.getCause();
+        } catch (TimeoutException e) {
+            timedOut.increment();
+            return load.apply(key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return load.apply(key);
+        }
+    }
+
+    // Calls answered with the result (or exception) of another caller's call
+    public long sharedCount() {
+        return shared.sum();
+    }
+
+    // Callers that gave up waiting and ran the call themselves
+    public long timedOutCount() {
+        return timedOut.sum();
+    }
+}
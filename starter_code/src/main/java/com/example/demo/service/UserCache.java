@@ -0,0 +1,93 @@
+package com.example.demo.service;
+
+// Import necessary classes for the bounded, expiring in-memory cache
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Bounded cache of username -> credentials (ids and password hash) with a time to live, used to keep login
+// storms off the user table. Only immutable values are cached: Spring Security erases the password of the
+// UserDetails it is given after a successful login, so a fresh UserDetails has to be built for every authentication.
+@Service
+public class UserCache implements MeterBinder {
+
+    private final Cache<String, Credentials> credentials;
+
+    // Bumped on every invalidation, i.e. on every write to the user table; the ETag version of the user endpoints
+    private final AtomicLong version = new AtomicLong();
+
+    @Autowired
+    public UserCache(@Value("${security.user-cache.max-size:10000}") long maximumSize,
+                     @Value("${security.user-cache.ttl:PT5M}") Duration timeToLive) {
+        this.credentials = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+    }
+
+    // Returns the cached credentials for the username, or loads them with the given function (null results are not cached)
+    public Credentials getCredentials(String username, Function<String, Credentials> loader) {
+        return credentials.get(username, loader);
+    }
+
+    // Must be called whenever a user is created or its password changes
+    public void invalidate(String username) {
+        credentials.invalidate(username);
+        version.incrementAndGet();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    // Publishes size, hits, misses and evictions as the cache.* meters tagged cache=userCredentials
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, credentials, "userCredentials");
+    }
+
+    public CacheStats stats() {
+        return credentials.stats();
+    }
+
+    public long size() {
+        return credentials.estimatedSize();
+    }
+
+    // What a login needs to know about a user: the password hash, and the ids that go into the token
+    public static class Credentials {
+
+        private final long userId;
+        private final Long cartId;
+        private final String passwordHash;
+
+        public Credentials(long userId, Long cartId, String passwordHash) {
+            this.userId = userId;
+            this.cartId = cartId;
+            this.passwordHash = passwordHash;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public Long getCartId() {
+            return cartId;
+        }
+
+        public String getPasswordHash() {
+            return passwordHash;
+        }
+    }
+}
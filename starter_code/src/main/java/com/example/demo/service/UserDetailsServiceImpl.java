@@ -3,8 +3,10 @@ package com.example.demo.service;
 // Import necessary classes for handling user details and security
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.security.AuthenticatedUser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -16,7 +18,7 @@ import static java.util.Collections.emptyList;
 
 // This annotation indicates that this class is a Spring service component
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     // Logger to log messages for debugging or tracking user loading process
     private static final Logger logger = LoggerFactory.getLogger(UserDetailsServiceImpl.class);
@@ -25,26 +27,57 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     @Autowired
     private UserRepository userRepository;
 
+    // Cache of credential hashes, so repeated logins do not query the user table every time
+    @Autowired
+    private UserCache userCache;
+
     // Override the loadUserByUsername method from UserDetailsService interface
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        // Log an info message when attempting to load a user by username
-        logger.info("Attempting to load user by username: {}", username);
+        // Log a debug message when attempting to load a user by username
+        logger.debug("Attempting to load user by username: {}", username);
 
-        // Find the user from the database using the injected UserRepository
-        User user = userRepository.findByUsername(username);
+        // Find the credentials in the cache, or in the database using the injected UserRepository
+        UserCache.Credentials credentials = userCache.getCredentials(username, this::findCredentials);
 
         // If the user is not found, log the error and throw an exception
-        if (user == null) {
+        if (credentials == null) {
             logger.error("User not found: {}", username);
             throw new UsernameNotFoundException(username);  // Throw exception if user does not exist
         }
 
-        // Log that the user was found successfully
-        logger.info("User found: {}", username);
-
-        // Return a UserDetails object (Spring Security's implementation) for the found user
+        // Return a UserDetails object (Spring Security's implementation) for the found user, carrying the ids for the token
         // We use an empty list for granted authorities (roles) as they are not defined here
-        return new org.springframework.security.core.userdetails.User(user.getUsername(), user.getPassword(), emptyList());
+        return new AuthenticatedUser.Details(
+                new AuthenticatedUser(username, credentials.getUserId(), credentials.getCartId()),
+                credentials.getPasswordHash(), emptyList());
+    }
+
+    // Called by Spring Security after a successful login whose stored hash uses an outdated BCrypt strength
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByUsername(userDetails.getUsername());
+        if (user != null) {
+            logger.info("Rehashing password of user: {}", userDetails.getUsername());
+            user.setPassword(newPassword);
+            userRepository.save(user);
+            userCache.invalidate(userDetails.getUsername());
+        }
+        if (userDetails instanceof AuthenticatedUser.Details) {
+            return new AuthenticatedUser.Details(((AuthenticatedUser.Details) userDetails).getAuthenticatedUser(),
+                    newPassword, userDetails.getAuthorities());
+        }
+        return new org.springframework.security.core.userdetails.User(userDetails.getUsername(), newPassword,
+                userDetails.getAuthorities());
+    }
+
+    // Loads the credentials of a user from the database, or null if the user does not exist
+    private UserCache.Credentials findCredentials(String username) {
+        User user = userRepository.findByUsername(username);
+        if (user == null) {
+            return null;
+        }
+        Long cartId = user.getCart() == null ? null : user.getCart().getId();
+        return new UserCache.Credentials(user.getId(), cartId, user.getPassword());
     }
 }
@@ -0,0 +1,127 @@
+package com.example.demo.service;
+
+// Import necessary classes for reading JFR events reflectively and recording metrics
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Reports virtual threads that stayed pinned to their carrier thread for longer than the threshold, typically because
+// they blocked inside a synchronized block or method. Pinned intervals come from the JDK's own jdk.VirtualThreadPinned
+// flight recorder event, streamed in process; each is timed as virtual.thread.pinned, tagged with the innermost
+// application frame of the pinned stack (or the innermost frame when no application code is on it), and the first
+// occurrence of every such site is logged with its stack. The JFR classes are looked up by reflection because the
+// application is built for Java 8; the detector only starts when virtual threads are in use.
+public class VirtualThreadPinningDetector implements MeterBinder, DisposableBean {
+
+    // Logger to log each pinning site once, with its stack
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningDetector.class);
+
+    public static final String PINNED = "virtual.thread.pinned";
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String APPLICATION_PACKAGE = "com.example.demo.";
+
+    // Frames logged per pinned stack
+    private static final int LOGGED_FRAMES = 20;
+
+    private final boolean enabled;
+    private final Duration threshold;
+    private final Set<String> reportedSites = ConcurrentHashMap.newKeySet();
+
+    private volatile MeterRegistry registry;
+    private AutoCloseable stream;
+
+    public VirtualThreadPinningDetector(boolean enabled, Duration threshold) {
+        this.enabled = enabled;
+        this.threshold = threshold;
+    }
+
+    // Starts streaming the pinned events into the registry
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        if (!enabled || stream != null) {
+            return;
+        }
+        try {
+            Class<?> streamType = Class.forName("jdk.jfr.consumer.RecordingStream");
+            Class<?> settingsType = Class.forName("jdk.jfr.EventSettings");
+            Object recording = streamType.getConstructor().newInstance();
+            Object settings = streamType.getMethod("enable", String.class).invoke(recording, PINNED_EVENT);
+            settingsType.getMethod("withThreshold", Duration.class).invoke(settings, threshold);
+            settingsType.getMethod("withStackTrace").invoke(settings);
+            Consumer<Object> onPinned = this::pinned;
+            streamType.getMethod("onEvent", String.class, Consumer.class).invoke(recording, PINNED_EVENT, onPinned);
+            streamType.getMethod("startAsync").invoke(recording);
+            stream = (AutoCloseable) recording;
+            logger.info("Reporting virtual threads pinned for more than {} ms", threshold.toMillis());
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("Cannot stream {} events, pinned virtual threads are not reported", PINNED_EVENT, e);
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    // Called on the JFR stream thread with a jdk.jfr.consumer.RecordedEvent
+    private void pinned(Object event) {
+        try {
+            Duration duration = (Duration) call(event, "jdk.jfr.consumer.RecordedEvent", "getDuration");
+            Object stackTrace = call(event, "jdk.jfr.consumer.RecordedEvent", "getStackTrace");
+            List<?> frames = stackTrace == null ? null
+                    : (List<?>) call(stackTrace, "jdk.jfr.consumer.RecordedStackTrace", "getFrames");
+            String site = "unknown";
+            StringBuilder stack = new StringBuilder();
+            if (frames != null) {
+                for (int i = 0; i < frames.size(); i++) {
+                    String frame = describe(frames.get(i));
+                    if (i == 0 || (!site.startsWith(APPLICATION_PACKAGE) && frame.startsWith(APPLICATION_PACKAGE))) {
+                        site = frame.substring(0, frame.indexOf('('));
+                    }
+                    if (i < LOGGED_FRAMES) {
+                        stack.append(System.lineSeparator()).append("\tat ").append(frame);
+                    }
+                }
+            }
+            Timer.builder(PINNED)
+                    .description("Time virtual threads spent pinned to their carrier thread")
+                    .tag("site", site)
+                    .register(registry)
+                    .record(duration);
+            if (reportedSites.add(site)) {
+                logger.warn("Virtual thread pinned for {} ms at {}{}", duration.toMillis(), site, stack);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.debug("Cannot read {} event", PINNED_EVENT, e);
+        }
+    }
+
+    // "type.method(line)" for a jdk.jfr.consumer.RecordedFrame
+    private static String describe(Object frame) throws ReflectiveOperationException {
+        Object method = call(frame, "jdk.jfr.consumer.RecordedFrame", "getMethod");
+        Object type = call(method, "jdk.jfr.consumer.RecordedMethod", "getType");
+        return call(type, "jdk.jfr.consumer.RecordedClass", "getName") + "."
+                + call(method, "jdk.jfr.consumer.RecordedMethod", "getName") + "("
+                + call(frame, "jdk.jfr.consumer.RecordedFrame", "getLineNumber") + ")";
+    }
+
+    // Invokes a public no-argument method as declared by the public JFR type, not by the implementation class
+    private static Object call(Object target, String type, String name) throws ReflectiveOperationException {
+        Method method = Class.forName(type).getMethod(name);
+        return method.invoke(target);
+    }
+}
@@ -10,4 +10,17 @@ public class Constant {
     public static final String HEADER_STRING = "Authorization";
     public static final String SIGN_UP_URL = "/api/user/create";
     public static final String SIGN_IN_URL = "/login";
+
+    // Signed JWT claims carrying the user id and cart id, so requests can skip the lookup by username
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String CART_ID_CLAIM = "cid";
+
+    // Newline-delimited JSON, used by the streaming export endpoints
+    public static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
+    // Upper bound for the page size of the paginated endpoints
+    public static final int MAX_PAGE_SIZE = 100;
+
+    // Upper bound for the number of carts submitted as orders by one batch request
+    public static final int MAX_BATCH_ORDERS = 1000;
 }
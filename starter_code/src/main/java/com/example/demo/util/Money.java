@@ -0,0 +1,29 @@
+package com.example.demo.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Conversions between BigDecimal amounts, used at the edges (Item.price, JSON), and long minor units (cents),
+// used for cart and order totals so that adding and removing items does not allocate
+public final class Money {
+
+    // Number of minor-unit digits, matching the scale Hibernate gives the BigDecimal price columns
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    // Amounts with more than two fraction digits are rounded half-even; two-digit amounts convert exactly
+    public static long toCents(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    // Price of `quantity` units, failing instead of silently overflowing
+    public static long times(long cents, int quantity) {
+        return Math.multiplyExact(cents, (long) quantity);
+    }
+}
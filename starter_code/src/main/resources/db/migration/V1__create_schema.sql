@@ -0,0 +1,64 @@
+-- Schema of the entities in com.example.demo.model.persistence; Hibernate validates it against the mappings on startup.
+-- Ids come from sequences handed out 50 at a time (pooled-lo), see the @SequenceGenerator of each entity.
+create sequence cart_seq start with 1 increment by 50;
+create sequence item_seq start with 1 increment by 50;
+create sequence user_order_seq start with 1 increment by 50;
+create sequence user_seq start with 1 increment by 50;
+
+create table cart (
+    id bigint not null,
+    total_cents bigint not null,
+    version bigint not null,
+    primary key (id)
+);
+
+create table cart_line (
+    cart_id bigint not null,
+    line_index integer not null,
+    item_id bigint not null,
+    quantity integer not null,
+    unit_price_cents bigint not null,
+    primary key (cart_id, line_index),
+    constraint fk_cart_line_cart foreign key (cart_id) references cart
+);
+
+create table item (
+    id bigint not null,
+    name varchar(255) not null,
+    price decimal(19,2) not null,
+    description varchar(255) not null,
+    primary key (id)
+);
+
+create index idx_item_name on item (name);
+
+create table user (
+    id bigint not null,
+    username varchar(255) not null,
+    password varchar(255) not null,
+    cart_id bigint,
+    primary key (id),
+    constraint uk_user_username unique (username),
+    constraint fk_user_cart foreign key (cart_id) references cart
+);
+
+create table user_order (
+    id bigint not null,
+    user_id bigint not null,
+    total_cents bigint not null,
+    primary key (id),
+    constraint fk_user_order_user foreign key (user_id) references user
+);
+
+-- Serves the keyset pages of the order history: where user_id = ? and id > ? order by id
+create index idx_user_order_user_id on user_order (user_id, id);
+
+create table user_order_line (
+    order_id bigint not null,
+    line_index integer not null,
+    item_id bigint not null,
+    quantity integer not null,
+    unit_price_cents bigint not null,
+    primary key (order_id, line_index),
+    constraint fk_user_order_line_order foreign key (order_id) references user_order
+);
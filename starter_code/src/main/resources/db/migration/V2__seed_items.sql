@@ -0,0 +1,4 @@
+-- The starter catalog. Like every migration this runs once per database, so a persistent database is never re-seeded.
+insert into item (id, name, price, description) values (1, 'Round Widget Test', 6.99, 'A widget that is round');
+insert into item (id, name, price, description) values (2, 'Square Widget Test', 6.99, 'A widget that is square');
+alter sequence item_seq restart with 3;
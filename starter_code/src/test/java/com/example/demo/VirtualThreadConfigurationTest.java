@@ -0,0 +1,35 @@
+package com.example.demo;
+
+// Import necessary classes for testing and assertions
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class VirtualThreadConfigurationTest {
+
+    // Helper method to check that the mode is refused on the given Java version
+    private static void assertRefused(String javaSpecificationVersion) {
+        try {
+            VirtualThreadConfiguration.requireUnpinnedMonitors(javaSpecificationVersion);
+            fail("Virtual threads should be refused on Java " + javaSpecificationVersion);
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("needs Java 24 or newer"));
+        }
+    }
+
+    @Test
+    public void refuseJavaVersionsThatPinInsideMonitors() {
+        assertRefused("1.8");
+        assertRefused("17");
+        // Virtual threads exist from Java 21, but pin their carrier inside Tomcat's synchronized request processing
+        assertRefused("21");
+        assertRefused("23");
+    }
+
+    @Test
+    public void acceptJava24AndNewer() {
+        VirtualThreadConfiguration.requireUnpinnedMonitors("24");
+        VirtualThreadConfiguration.requireUnpinnedMonitors("25");
+    }
+}
@@ -2,26 +2,49 @@ package com.example.demo.controllers;
 
 // Importing necessary classes and packages
 import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.CartLine;
 import com.example.demo.model.persistence.Item;
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.ItemRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.requests.BatchModifyCartRequest;
+import com.example.demo.model.requests.CartOperation;
 import com.example.demo.model.requests.ModifyCartRequest;
+import com.example.demo.model.responses.CartView;
+import com.example.demo.model.responses.LineView;
+import com.example.demo.model.responses.UserRef;
+import com.example.demo.security.AuthenticatedUser;
+import com.example.demo.service.CartService;
+import com.example.demo.service.CoalescedLookups;
+import com.example.demo.service.RequestMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class CartControllerTest {
@@ -30,13 +53,16 @@ public class CartControllerTest {
     private CartController cartController;
     private UserRepository userRepository;
     private ItemRepository itemRepository;
+    private CartRepository cartRepository;
+    private SimpleMeterRegistry meterRegistry;
 
     // Set up method to initialize the test environment
     @Before
     public void setUpMocked() {
         // Mocking the repositories
         userRepository = mock(UserRepository.class);
-        CartRepository cartRepository = mock(CartRepository.class); // Mock cart repository
+        cartRepository = mock(CartRepository.class); // Mock cart repository
+        when(cartRepository.save(any(Cart.class))).thenAnswer(returnsFirstArg()); // Saving returns the saved cart
         itemRepository = mock(ItemRepository.class); // Mock item repository
 
         // Creating a new instance of CartController
@@ -45,6 +71,12 @@ public class CartControllerTest {
         injectMocked(cartController, "userRepository", userRepository);
         injectMocked(cartController, "cartRepository", cartRepository);
         injectMocked(cartController, "itemRepository", itemRepository);
+        injectMocked(cartController, "coalescedLookups", new CoalescedLookups(itemRepository, userRepository, Duration.ofSeconds(2)));
+        meterRegistry = new SimpleMeterRegistry();
+        injectMocked(cartController, "requestMetrics", new RequestMetrics(meterRegistry));
+        // The cart service runs against the mocked repository and a transaction manager that does nothing
+        injectMocked(cartController, "cartService", new CartService(cartRepository,
+                mock(PlatformTransactionManager.class), meterRegistry, 3, 0));
     }
 
     // Utility method to injectMocked dependencies into a controller using reflection
@@ -100,25 +132,77 @@ public class CartControllerTest {
         when(itemRepository.findById(0L)).thenReturn(Optional.of(item));
 
         // Call the controller method to add the item to the cart
-        ResponseEntity<Cart> response = cartController.addTocart(modifyCartRequest);
+        ResponseEntity<CartView> response = cartController.addTocart(modifyCartRequest, null);
 
         // Assert the response is not null and has a status of 200 (OK)
         assertNotNull(response);
         assertEquals(200, response.getStatusCodeValue());
 
         // Get the actual cart from the response body
-        Cart actualCart = response.getBody();
+        CartView actualCart = response.getBody();
         assertNotNull(actualCart); // Assert the actual cart is not null
         assertEquals(user.getCart().getId(), actualCart.getId()); // Assert cart ID is the same
 
-        // Create the expected list of items in the cart based on the quantity
-        List<Item> expectedItems = Collections.nCopies(modifyCartRequest.getQuantity(), item);
-        assertEquals(expectedItems, actualCart.getItems()); // Assert the items in the cart match
+        // The whole quantity is held by a single cart line with the item's price snapshot
+        List<CartLine> expectedLines = Collections.singletonList(
+                new CartLine(item.getId(), modifyCartRequest.getQuantity(), item.getPrice()));
+        assertEquals(lineViews(expectedLines), actualCart.getLines()); // Assert the lines in the cart match
 
-        assertEquals(user, actualCart.getUser()); // Assert the user in the cart matches
+        assertEquals(new UserRef(user.getId(), user.getUsername()), actualCart.getUser()); // Assert the user in the cart matches
         assertEquals(new BigDecimal("8.97"), actualCart.getTotal()); // Assert the total price is correct
     }
 
+    // Test case for adding an item to the cart of the caller, whose token carries the cart id
+    @Test
+    public void addCartByCartId() {
+        User user = createUserWithCart(); // Create a test user with a cart
+        Item item = createItemMocked(new BigDecimal("2.99")); // Create a test item with price 2.99
+
+        // Create a ModifyCartRequest for the caller's own cart
+        ModifyCartRequest modifyCartRequest = new ModifyCartRequest();
+        modifyCartRequest.setUsername("test");
+        modifyCartRequest.setItemId(0);
+        modifyCartRequest.setQuantity(3);
+
+        // Mock the cart lookup by primary key
+        when(cartRepository.findById(0L)).thenReturn(Optional.of(user.getCart()));
+        when(itemRepository.findById(0L)).thenReturn(Optional.of(item));
+
+        // Call the controller method as the authenticated owner of the cart
+        ResponseEntity<CartView> response = cartController.addTocart(modifyCartRequest,
+                new AuthenticatedUser("test", 0L, 0L));
+
+        // Assert the cart was updated without looking the user up by username
+        assertNotNull(response);
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(new BigDecimal("8.97"), response.getBody().getTotal());
+        verify(userRepository, never()).findByUsername(anyString());
+    }
+
+    // Test case for adding an item to the cart of another user, which falls back to the lookup by username
+    @Test
+    public void addCartOtherUser() {
+        User user = createUserWithCart(); // Create a test user with a cart
+        Item item = createItemMocked(new BigDecimal("2.99")); // Create a test item with price 2.99
+
+        // Create a ModifyCartRequest for a cart that is not the caller's
+        ModifyCartRequest modifyCartRequest = new ModifyCartRequest();
+        modifyCartRequest.setUsername("test");
+        modifyCartRequest.setItemId(0);
+        modifyCartRequest.setQuantity(1);
+
+        when(userRepository.findByUsername("test")).thenReturn(user);
+        when(itemRepository.findById(0L)).thenReturn(Optional.of(item));
+
+        // The principal's ids belong to someone else and must not be used
+        ResponseEntity<CartView> response = cartController.addTocart(modifyCartRequest,
+                new AuthenticatedUser("other", 7L, 7L));
+
+        assertNotNull(response);
+        assertEquals(200, response.getStatusCodeValue());
+        verify(cartRepository, never()).findById(7L);
+    }
+
     // Test case for adding an item to the cart when the user is not found
     @Test
     public void addCartNotFound() {
@@ -132,7 +216,7 @@ public class CartControllerTest {
         when(userRepository.findByUsername("test")).thenReturn(null);
 
         // Call the controller method to add the item to the cart
-        ResponseEntity<Cart> response = cartController.addTocart(modifyCartRequest);
+        ResponseEntity<CartView> response = cartController.addTocart(modifyCartRequest, null);
 
         // Assert the response is not null and has a status of 404 (Not Found)
         assertNotNull(response);
@@ -155,11 +239,45 @@ public class CartControllerTest {
         when(itemRepository.findById(1L)).thenReturn(Optional.empty());
 
         // Call the controller method to add the item to the cart
-        ResponseEntity<Cart> response = cartController.addTocart(modifyCartRequest);
+        ResponseEntity<CartView> response = cartController.addTocart(modifyCartRequest, null);
 
         // Assert the response is not null and has a status of 404 (Not Found)
         assertNotNull(response);
         assertEquals(404, response.getStatusCodeValue());
+
+        // Assert the rejection was counted as an unknown item
+        assertEquals(1.0, meterRegistry.get(RequestMetrics.REJECTED_REQUESTS)
+                .tag("endpoint", "cart.addToCart").tag("reason", "item_not_found").counter().count(), 0.0);
+    }
+
+    // Test case for adding an item twice past the largest line quantity, which must be refused without a save
+    @Test
+    public void addCartQuantityOverflow() {
+        User user = createUserWithCart(); // Create a test user with a cart
+        Item item = createItemMocked(new BigDecimal("2.99"));
+
+        ModifyCartRequest modifyCartRequest = new ModifyCartRequest();
+        modifyCartRequest.setUsername("test");
+        modifyCartRequest.setItemId(0);
+        modifyCartRequest.setQuantity(2_000_000_000);
+
+        when(userRepository.findByUsername("test")).thenReturn(user);
+        when(itemRepository.findById(0L)).thenReturn(Optional.of(item));
+
+        // The first call fits in a line quantity
+        assertEquals(200, cartController.addTocart(modifyCartRequest, null).getStatusCodeValue());
+
+        // The second one would take the line past Integer.MAX_VALUE
+        ResponseEntity<CartView> response = cartController.addTocart(modifyCartRequest, null);
+        assertNotNull(response);
+        assertEquals(400, response.getStatusCodeValue());
+
+        // The cart keeps the first quantity and a total that matches it, and was saved only once
+        assertEquals(2_000_000_000, user.getCart().getLines().get(0).getQuantity());
+        assertEquals(299L * 2_000_000_000, user.getCart().getTotalCents());
+        verify(cartRepository, times(1)).save(any(Cart.class));
+        assertEquals(1.0, meterRegistry.get(RequestMetrics.REJECTED_REQUESTS)
+                .tag("endpoint", "cart.addToCart").tag("reason", "quantity_overflow").counter().count(), 0.0);
     }
 
     // Test case for removing an item from the cart
@@ -175,8 +293,9 @@ public class CartControllerTest {
         modifyCartRequest.setQuantity(1);
 
         // Add 3 items to the user's cart (so we can remove one)
-        List<Item> itemsArray = new ArrayList<>(Collections.nCopies(3, item));
-        user.getCart().setItems(itemsArray);
+        List<CartLine> linesArray = new ArrayList<>();
+        linesArray.add(new CartLine(item.getId(), 3, item.getPrice()));
+        user.getCart().setLines(linesArray);
         user.getCart().setTotal(BigDecimal.valueOf(8.97)); // Total price for 3 items
 
         // Mock the userRepository and itemRepository
@@ -184,22 +303,22 @@ public class CartControllerTest {
         when(itemRepository.findById(0L)).thenReturn(Optional.of(item));
 
         // Call the controller method to remove the item from the cart
-        ResponseEntity<Cart> response = cartController.removeFromcart(modifyCartRequest);
+        ResponseEntity<CartView> response = cartController.removeFromcart(modifyCartRequest, null);
 
         // Assert the response is not null and has a status of 200 (OK)
         assertNotNull(response);
         assertEquals(200, response.getStatusCodeValue());
 
         // Get the actual cart from the response body
-        Cart actualCart = response.getBody();
+        CartView actualCart = response.getBody();
         assertNotNull(actualCart);
         assertEquals(user.getCart().getId(), actualCart.getId()); // Assert the cart ID is the same
 
-        // Create the expected list of items after removing one
-        List<Item> expectedItemsArray = new ArrayList<>(Collections.nCopies(2, item));
-        assertEquals(expectedItemsArray, actualCart.getItems()); // Assert the items in the cart match
+        // Create the expected list of lines after removing one
+        List<CartLine> expectedLinesArray = Collections.singletonList(new CartLine(item.getId(), 2, item.getPrice()));
+        assertEquals(lineViews(expectedLinesArray), actualCart.getLines()); // Assert the lines in the cart match
 
-        assertEquals(user, actualCart.getUser()); // Assert the user in the cart matches
+        assertEquals(new UserRef(user.getId(), user.getUsername()), actualCart.getUser()); // Assert the user in the cart matches
         assertEquals(BigDecimal.valueOf(5.98), actualCart.getTotal()); // Assert the total price is correct
     }
 
@@ -216,7 +335,7 @@ public class CartControllerTest {
         when(userRepository.findByUsername("test")).thenReturn(null);
 
         // Call the controller method to remove the item from the cart
-        ResponseEntity<Cart> response = cartController.removeFromcart(modifyCartRequest);
+        ResponseEntity<CartView> response = cartController.removeFromcart(modifyCartRequest, null);
 
         // Assert the response is not null and has a status of 404 (Not Found)
         assertNotNull(response);
@@ -239,10 +358,109 @@ public class CartControllerTest {
         when(itemRepository.findById(1L)).thenReturn(Optional.empty());
 
         // Call the controller method to remove the item from the cart
-        ResponseEntity<Cart> response = cartController.removeFromcart(modifyCartRequest);
+        ResponseEntity<CartView> response = cartController.removeFromcart(modifyCartRequest, null);
 
         // Assert the response is not null and has a status of 404 (Not Found)
         assertNotNull(response);
         assertEquals(404, response.getStatusCodeValue());
     }
+
+    // Test case for removing an item that is not in the cart, which must leave the total untouched
+    @Test
+    public void removeCartItemNotInCart() {
+        User user = createUserWithCart(); // Create a test user with an empty cart
+        Item item = createItemMocked(new BigDecimal("2.99"));
+        user.getCart().setTotal(new BigDecimal("0.00"));
+
+        ModifyCartRequest modifyCartRequest = new ModifyCartRequest();
+        modifyCartRequest.setUsername("test");
+        modifyCartRequest.setItemId(0);
+        modifyCartRequest.setQuantity(2);
+
+        when(userRepository.findByUsername("test")).thenReturn(user);
+        when(itemRepository.findById(0L)).thenReturn(Optional.of(item));
+
+        ResponseEntity<CartView> response = cartController.removeFromcart(modifyCartRequest, null);
+
+        // Assert nothing was subtracted for the missing line
+        assertNotNull(response);
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(new BigDecimal("0.00"), response.getBody().getTotal());
+    }
+
+    // Test case for applying several operations to the cart in one batch
+    @Test
+    public void batchModifyCart() {
+        User user = createUserWithCart(); // Create a test user with a cart
+        Item first = createItemMocked(new BigDecimal("2.99"));
+        Item second = createItemMocked(new BigDecimal("1.50"));
+        second.setId(1L);
+
+        // Add 3 of the first item and 2 of the second, then take one of the first back out
+        BatchModifyCartRequest request = new BatchModifyCartRequest();
+        request.setUsername("test");
+        request.setOperations(Arrays.asList(
+                new CartOperation(0, 3), new CartOperation(1, 2), new CartOperation(0, -1)));
+
+        // Both items are loaded with a single findAllById call
+        when(userRepository.findByUsername("test")).thenReturn(user);
+        when(itemRepository.findAllById(anyCollection())).thenReturn(Arrays.asList(first, second));
+
+        ResponseEntity<CartView> response = cartController.modifyCart(request, null);
+
+        assertNotNull(response);
+        assertEquals(200, response.getStatusCodeValue());
+        List<CartLine> expectedLines = Arrays.asList(
+                new CartLine(0L, 2, first.getPrice()), new CartLine(1L, 2, second.getPrice()));
+        assertEquals(lineViews(expectedLines), response.getBody().getLines());
+        assertEquals(new BigDecimal("8.98"), response.getBody().getTotal());
+    }
+
+    // Test case for a batch that references an unknown item, which must leave the cart untouched
+    @Test
+    public void batchModifyCartItemNotFound() {
+        User user = createUserWithCart(); // Create a test user with a cart
+        Item first = createItemMocked(new BigDecimal("2.99"));
+
+        BatchModifyCartRequest request = new BatchModifyCartRequest();
+        request.setUsername("test");
+        request.setOperations(Arrays.asList(new CartOperation(0, 3), new CartOperation(1, 2)));
+
+        // Only the first item exists
+        when(userRepository.findByUsername("test")).thenReturn(user);
+        when(itemRepository.findAllById(anyCollection())).thenReturn(Collections.singletonList(first));
+
+        ResponseEntity<CartView> response = cartController.modifyCart(request, null);
+
+        assertNotNull(response);
+        assertEquals(404, response.getStatusCodeValue());
+        assertNull(user.getCart().getLines());
+    }
+
+    // Test case for a batch whose operations add up past the largest line quantity
+    @Test
+    public void batchModifyCartQuantityOverflow() {
+        User user = createUserWithCart(); // Create a test user with a cart
+        Item first = createItemMocked(new BigDecimal("2.99"));
+
+        BatchModifyCartRequest request = new BatchModifyCartRequest();
+        request.setUsername("test");
+        request.setOperations(Arrays.asList(new CartOperation(0, Integer.MAX_VALUE), new CartOperation(0, 1)));
+
+        when(userRepository.findByUsername("test")).thenReturn(user);
+        when(itemRepository.findAllById(anyCollection())).thenReturn(Collections.singletonList(first));
+
+        ResponseEntity<CartView> response = cartController.modifyCart(request, null);
+
+        assertNotNull(response);
+        assertEquals(400, response.getStatusCodeValue());
+        verify(cartRepository, never()).save(any(Cart.class));
+        assertEquals(1.0, meterRegistry.get(RequestMetrics.REJECTED_REQUESTS)
+                .tag("endpoint", "cart.batch").tag("reason", "quantity_overflow").counter().count(), 0.0);
+    }
+
+    // Helper method to render cart lines the way the responses do
+    private static List<LineView> lineViews(List<CartLine> lines) {
+        return lines.stream().map(LineView::of).collect(Collectors.toList());
+    }
 }
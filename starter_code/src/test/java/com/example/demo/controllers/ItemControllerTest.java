@@ -3,18 +3,33 @@ package com.example.demo.controllers;
 // Import necessary classes and packages
 import com.example.demo.model.persistence.Item;
 import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.service.HttpCaching;
+import com.example.demo.service.ItemCatalogCache;
+import com.example.demo.service.ItemSearchIndex;
+import com.example.demo.service.RequestMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.env.MockEnvironment;
 
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -23,21 +38,28 @@ public class ItemControllerTest {
     // Declare an ItemController instance and a mock ItemRepository
     private ItemController itemController;
     private final ItemRepository itemRepository = mock(ItemRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ItemCatalogCache itemCatalogCache;
 
 
     @Before
     public void setUpMocked() {
         // Initialize the ItemController instance
         itemController = new ItemController();
-        // Inject the mock itemRepository into the itemController
-        injectDependenciesMocked(itemController, itemRepository);
+        // Inject a catalog cache backed by the mock itemRepository into the itemController
+        itemCatalogCache = new ItemCatalogCache(itemRepository);
+        injectDependenciesMocked(itemController, "itemCatalogCache", itemCatalogCache);
+        injectDependenciesMocked(itemController, "httpCaching",
+                new HttpCaching(new MockEnvironment().withProperty("http.cache-control.items", "max-age=60")));
+        injectDependenciesMocked(itemController, "itemSearchIndex", new ItemSearchIndex(itemRepository));
+        injectDependenciesMocked(itemController, "requestMetrics", new RequestMetrics(meterRegistry));
     }
 
 
-    private static void injectDependenciesMocked(Object target, Object toInject) {
+    private static void injectDependenciesMocked(Object target, String fieldName, Object toInject) {
         try {
-            // Get the private field 'itemRepository' from the target (ItemController)
-            Field field = target.getClass().getDeclaredField("itemRepository");
+            // Get the private field from the target (ItemController)
+            Field field = target.getClass().getDeclaredField(fieldName);
             boolean accessible = field.isAccessible();
             field.setAccessible(true);  // Make the field accessible if it's private
             field.set(target, toInject);  // Inject the mock repository
@@ -49,8 +71,8 @@ public class ItemControllerTest {
 
     @Test
     public void getItemByNameEmpty() throws Exception {
-        // Mock the repository method to return null when findByName() is called with "testItem"
-        when(itemRepository.findByName("testItem")).thenReturn(null);
+        // The catalog is empty, so no name exists
+        when(itemRepository.findAll()).thenReturn(Collections.emptyList());
 
         // Call the controller's method to get items by name
         final ResponseEntity<List<Item>> response = itemController.getItemsByName("testItem");
@@ -58,6 +80,15 @@ public class ItemControllerTest {
         // Assert the response is not null and the status code is 404 (Not Found) since no items are found
         assertNotNull(response);
         assertEquals(404, response.getStatusCodeValue());
+
+        // Assert the rejection was counted
+        assertEquals(1.0, meterRegistry.get(RequestMetrics.REJECTED_REQUESTS)
+                .tag("endpoint", "item.getItemsByName").tag("status", "404").counter().count(), 0.0);
+
+        // Unknown names are answered from the snapshot: another probe costs no query either
+        assertEquals(404, itemController.getItemsByName("otherItem").getStatusCodeValue());
+        verify(itemRepository, never()).findByName(anyString());
+        verify(itemRepository, times(1)).findAll();
     }
 
 
@@ -80,7 +111,7 @@ public class ItemControllerTest {
         when(itemRepository.findAll()).thenReturn(expectedItems);
 
         // Call the controller's method to get all items
-        final ResponseEntity<List<Item>> response = itemController.getItems();
+        final ResponseEntity<List<Item>> response = itemController.getItems(null);
 
         // Assert the response is not null and the status code is 200 (OK)
         assertNotNull(response);
@@ -90,6 +121,37 @@ public class ItemControllerTest {
         List<Item> actualItems = response.getBody();
         assertNotNull(actualItems);  // Assert the actual items are not null
         assertEquals(expectedItems, actualItems);  // Assert the expected and actual items match
+
+        // A second call is served from the catalog cache without querying the repository again
+        assertEquals(expectedItems, itemController.getItems(null).getBody());
+        verify(itemRepository, times(1)).findAll();
+    }
+
+    @Test
+    public void getAllItemNotModified() throws Exception {
+        // Mock the repository method to return an empty catalog
+        when(itemRepository.findAll()).thenReturn(new ArrayList<>());
+
+        // The first call returns the catalog with its ETag and the configured Cache-Control
+        final ResponseEntity<List<Item>> response = itemController.getItems(null);
+        assertEquals(200, response.getStatusCodeValue());
+        String etag = response.getHeaders().getETag();
+        assertNotNull(etag);
+        assertEquals("max-age=60", response.getHeaders().getCacheControl());
+
+        // Asking again with that ETag answers 304 Not Modified without a body
+        final ResponseEntity<List<Item>> notModified = itemController.getItems("W/\"other\", " + etag);
+        assertEquals(304, notModified.getStatusCodeValue());
+        assertNull(notModified.getBody());
+        assertEquals(etag, notModified.getHeaders().getETag());
+        assertEquals("max-age=60", notModified.getHeaders().getFirst(HttpHeaders.CACHE_CONTROL));
+
+        // A change to the catalog changes the ETag, so the same request gets the full catalog again
+        itemCatalogCache.invalidate();
+        final ResponseEntity<List<Item>> modified = itemController.getItems(etag);
+        assertEquals(200, modified.getStatusCodeValue());
+        assertNotEquals(etag, modified.getHeaders().getETag());
+        verify(itemRepository, times(2)).findAll();
     }
 
     @Test
@@ -105,7 +167,7 @@ public class ItemControllerTest {
         when(itemRepository.findById((long) 0)).thenReturn(java.util.Optional.of(item));
 
         // Call the controller's method to get the item by ID
-        final ResponseEntity<Item> response = itemController.getItemById((long) 0);
+        final ResponseEntity<Item> response = itemController.getItemById((long) 0, null);
 
         // Assert the response is not null and the status code is 200 (OK)
         assertNotNull(response);
@@ -137,8 +199,8 @@ public class ItemControllerTest {
             expectedItems.add(item); // Add the item to the expected items list
         }
 
-        // Mock the repository method to return the expected items when findByName() is called with "testItem"
-        when(itemRepository.findByName("ItemTest")).thenReturn(expectedItems);
+        // The catalog snapshot holds the expected items
+        when(itemRepository.findAll()).thenReturn(expectedItems);
 
         // Call the controller's method to get items by name
         final ResponseEntity<List<Item>> response = itemController.getItemsByName("ItemTest");
@@ -152,4 +214,44 @@ public class ItemControllerTest {
         assertNotNull(actualItems);  // Assert the actual items are not null
         assertEquals(expectedItems, actualItems);  // Assert the expected and actual items match
     }
+
+    @Test
+    public void searchItems() throws Exception {
+        // Create two test items, only one of them round
+        Item round = new Item();
+        round.setId(1L);
+        round.setName("Round Widget");
+        round.setPrice(new BigDecimal("6.99"));
+        round.setDescription("A widget that is round");
+        Item square = new Item();
+        square.setId(2L);
+        square.setName("Square Widget");
+        square.setPrice(new BigDecimal("6.99"));
+        square.setDescription("A widget that is square");
+        when(itemRepository.findAll()).thenReturn(Arrays.asList(round, square));
+
+        // Search with a prefix of "round"
+        final ResponseEntity<List<Item>> response = itemController.searchItems("wid rou", 20);
+
+        // Assert the status code is 200 (OK) and only the round widget matched
+        assertNotNull(response);
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(Arrays.asList(round), response.getBody());
+
+        // A search without matches is not an error
+        assertEquals(200, itemController.searchItems("lamp", 20).getStatusCodeValue());
+        assertEquals(0, itemController.searchItems("lamp", 20).getBody().size());
+    }
+
+    @Test
+    public void searchItemsEmptyQuery() throws Exception {
+        // A blank query is rejected
+        final ResponseEntity<List<Item>> response = itemController.searchItems(" ", 20);
+
+        // Assert the status code is 400 (Bad Request) and the rejection was counted
+        assertNotNull(response);
+        assertEquals(400, response.getStatusCodeValue());
+        assertEquals(1.0, meterRegistry.get(RequestMetrics.REJECTED_REQUESTS)
+                .tag("endpoint", "item.searchItems").tag("reason", "empty_query").counter().count(), 0.0);
+    }
 }
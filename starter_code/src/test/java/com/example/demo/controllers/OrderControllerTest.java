@@ -2,23 +2,53 @@ package com.example.demo.controllers;
 
 // Import necessary classes for testing, mocking, and assertions
 import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.CartLine;
 import com.example.demo.model.persistence.Item;
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.OrderRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.requests.BatchSubmitOrderRequest;
+import com.example.demo.model.persistence.repositories.OrderLineRow;
+import com.example.demo.model.responses.LineView;
+import com.example.demo.model.responses.OrderHistoryPage;
+import com.example.demo.model.responses.OrderView;
+import com.example.demo.model.responses.UserRef;
+import com.example.demo.security.AuthenticatedUser;
+import com.example.demo.service.OrderHistoryService;
+import com.example.demo.service.OrderSubmissionService;
+import com.example.demo.service.RequestMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
 import org.springframework.http.ResponseEntity;
 
+import javax.persistence.EntityManager;
+
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class OrderControllerTest {
@@ -27,12 +57,20 @@ public class OrderControllerTest {
     private OrderController orderController;
     private final UserRepository userRepository = mock(UserRepository.class);  // Mock UserRepository
     private final OrderRepository orderRepository = mock(OrderRepository.class);  // Mock OrderRepository
+    private final CartRepository cartRepository = mock(CartRepository.class);  // Mock CartRepository
+    private final EntityManager entityManager = mock(EntityManager.class);  // Mock EntityManager, flushed and cleared per batch
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();  // In-memory registry for the rejection counters
     
     @Before
     public void setUpMocked() {
         orderController = new OrderController();  // Initialize the OrderController
         injectDependenciesMocked(orderController, "userRepository", userRepository);  // Inject the mock UserRepository
         injectDependenciesMocked(orderController, "orderRepository", orderRepository);  // Inject the mock OrderRepository
+        injectDependenciesMocked(orderController, "cartRepository", cartRepository);  // Inject the mock CartRepository
+        injectDependenciesMocked(orderController, "orderHistoryService", new OrderHistoryService(orderRepository));  // Inject the paging service
+        injectDependenciesMocked(orderController, "orderSubmissionService",
+                new OrderSubmissionService(userRepository, orderRepository, entityManager, 2));  // Inject the batch writer, 2 orders per batch
+        injectDependenciesMocked(orderController, "requestMetrics", new RequestMetrics(meterRegistry));  // Inject metrics over an in-memory registry
     }
 
     private static void injectDependenciesMocked(Object target, String fieldName, Object dependency) {
@@ -56,33 +94,134 @@ public class OrderControllerTest {
         when(userRepository.findByUsername("test")).thenReturn(user);
 
         // Call the submit method of the OrderController with username "test"
-        final ResponseEntity<UserOrder> response = orderController.submit("test");
+        final ResponseEntity<OrderView> response = orderController.submit("test", null);
 
         // Assert that the response is not null and the status code is 200 (OK)
         assertNotNull(response);
         assertEquals(200, response.getStatusCodeValue());
 
-        // Get the UserOrder from the response body
-        UserOrder actualUserOrder = response.getBody();
-        assertNotNull(actualUserOrder);  // Ensure the UserOrder is not null
+        // Get the order from the response body
+        OrderView actualUserOrder = response.getBody();
+        assertNotNull(actualUserOrder);  // Ensure the order is not null
 
         // Assert that the items, user, and total match the expected values
-        assertEquals(user.getCart().getItems(), actualUserOrder.getItems());
-        assertEquals(user, actualUserOrder.getUser());
+        assertEquals(lineViews(user.getCart().getLines()), actualUserOrder.getLines());
+        assertEquals(new UserRef(user.getId(), user.getUsername()), actualUserOrder.getUser());
         assertEquals(user.getCart().getTotal(), actualUserOrder.getTotal());
     }
 
+    @Test
+    public void submitOrderByCartId() {
+        // Create a User with a Cart and some items
+        User user = createUserWithCart(new BigDecimal("2.99"));
+        user.getCart().setId(5L);
+        // Mock the cartRepository to return the cart by the id carried in the token
+        when(cartRepository.findById(5L)).thenReturn(Optional.of(user.getCart()));
+
+        // Call the submit method as the authenticated user
+        final ResponseEntity<OrderView> response = orderController.submit("test", new AuthenticatedUser("test", 1L, 5L));
+
+        // Assert that the order was created from the cart without looking the user up by username
+        assertNotNull(response);
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(lineViews(user.getCart().getLines()), response.getBody().getLines());
+        assertEquals(new UserRef(user.getId(), user.getUsername()), response.getBody().getUser());
+        verify(userRepository, never()).findByUsername(anyString());
+    }
+
+    @Test
+    public void getOrdersForUserByUserId() {
+        // Create a User with a Cart and some items
+        User user = createUserWithCart(new BigDecimal("2.99"));
+        List<UserOrder> userOrders = createUserOrders(user);
+        // Mock the order history of the user id carried in the token
+        when(orderRepository.findLineRows(1L, 0L, Integer.MAX_VALUE)).thenReturn(lineRows(userOrders));
+
+        // Call the getOrdersForUser method as the authenticated user
+        final ResponseEntity<List<OrderView>> response = orderController.getOrdersForUser("test",
+                new AuthenticatedUser("test", 1L, 5L));
+
+        // Assert that the orders are returned without looking the user up at all
+        assertNotNull(response);
+        assertEquals(200, response.getStatusCodeValue());
+        assertOrders(userOrders, response.getBody());
+        verify(userRepository, never()).findIdByUsername(anyString());
+        verify(userRepository, never()).findById(any());
+    }
+
     @Test
     public void submitOrderNotFound() {
         // Mock the userRepository to return null when findByUsername is called with "test"
         when(userRepository.findByUsername("test")).thenReturn(null);
 
         // Call the submit method with username "test"
-        final ResponseEntity<UserOrder> response = orderController.submit("test");
+        final ResponseEntity<OrderView> response = orderController.submit("test", null);
 
         // Assert that the response is not null and the status code is 404 (Not Found)
         assertNotNull(response);
         assertEquals(404, response.getStatusCodeValue());
+
+        // Assert that the rejection was counted as an unknown user
+        assertEquals(1.0, meterRegistry.get(RequestMetrics.REJECTED_REQUESTS)
+                .tag("endpoint", "order.submit").tag("reason", "user_not_found").counter().count(), 0.0);
+    }
+
+    @Test
+    public void submitAllOrders() {
+        // Three users with a cart each; duplicate usernames are submitted once
+        List<String> usernames = Arrays.asList("a", "b", "c");
+        when(userRepository.countByUsernameIn(anyCollection())).thenReturn(3L);
+        // The database returns the users of a chunk in its own order
+        when(userRepository.findWithCartByUsernameIn(Arrays.asList("a", "b")))
+                .thenReturn(Arrays.asList(createUserWithCart("b"), createUserWithCart("a")));
+        when(userRepository.findWithCartByUsernameIn(Collections.singletonList("c")))
+                .thenReturn(Collections.singletonList(createUserWithCart("c")));
+        when(orderRepository.save(any(UserOrder.class))).then(returnsFirstArg());
+
+        BatchSubmitOrderRequest request = new BatchSubmitOrderRequest();
+        request.setUsernames(Arrays.asList("a", "b", "a", "c"));
+        final ResponseEntity<List<OrderView>> response = orderController.submitAll(request);
+
+        // Assert that one order per user was created, in the order of the request
+        assertNotNull(response);
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(3, response.getBody().size());
+        for (int i = 0; i < usernames.size(); i++) {
+            assertEquals(usernames.get(i), response.getBody().get(i).getUser().getUsername());
+            assertEquals(new BigDecimal("8.97"), response.getBody().get(i).getTotal());
+        }
+
+        // Assert that the session was flushed and cleared once per batch of 2 orders
+        verify(orderRepository, times(3)).save(any(UserOrder.class));
+        verify(entityManager, times(2)).flush();
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    public void submitAllOrdersUnknownUser() {
+        // Only one of the two users exists
+        when(userRepository.countByUsernameIn(anyCollection())).thenReturn(1L);
+
+        BatchSubmitOrderRequest request = new BatchSubmitOrderRequest();
+        request.setUsernames(Arrays.asList("a", "b"));
+        final ResponseEntity<List<OrderView>> response = orderController.submitAll(request);
+
+        // Assert that the status code is 404 (Not Found) and nothing was written
+        assertNotNull(response);
+        assertEquals(404, response.getStatusCodeValue());
+        verify(orderRepository, never()).save(any(UserOrder.class));
+    }
+
+    @Test
+    public void submitAllOrdersEmpty() {
+        // A batch without usernames is rejected
+        final ResponseEntity<List<OrderView>> response = orderController.submitAll(new BatchSubmitOrderRequest());
+
+        // Assert that the status code is 400 (Bad Request) and counted as such
+        assertNotNull(response);
+        assertEquals(400, response.getStatusCodeValue());
+        assertEquals(1.0, meterRegistry.get(RequestMetrics.REJECTED_REQUESTS)
+                .tag("endpoint", "order.submitAll").tag("reason", "no_usernames").counter().count(), 0.0);
     }
 
     @Test
@@ -91,39 +230,81 @@ public class OrderControllerTest {
         User user = createUserWithCart(new BigDecimal("2.99"));
         // Create a list of orders for the user
         List<UserOrder> userOrders = createUserOrders(user);
-        // Mock the userRepository and orderRepository to return the user and orders
-        when(userRepository.findByUsername("test")).thenReturn(user);
-        when(orderRepository.findByUser(user)).thenReturn(userOrders);
+        // Mock the userRepository and orderRepository to return the user id and the rows of its orders
+        when(userRepository.findIdByUsername("test")).thenReturn(0L);
+        when(orderRepository.findLineRows(0L, 0L, Integer.MAX_VALUE)).thenReturn(lineRows(userOrders));
 
         // Call the getOrdersForUser method with username "test"
-        final ResponseEntity<List<UserOrder>> response = orderController.getOrdersForUser("test");
+        final ResponseEntity<List<OrderView>> response = orderController.getOrdersForUser("test", null);
 
         // Assert that the response is not null and the status code is 200 (OK)
         assertNotNull(response);
         assertEquals(200, response.getStatusCodeValue());
 
-        // Get the list of UserOrders from the response body
-        List<UserOrder> actualUserOrders = response.getBody();
+        // Get the list of orders from the response body
+        List<OrderView> actualUserOrders = response.getBody();
         assertNotNull(actualUserOrders);  // Ensure the actual orders are not null
 
         // Assert that the expected and actual orders match
-        assertEquals(userOrders, actualUserOrders);
+        assertOrders(userOrders, actualUserOrders);
     }
 
 
     @Test
     public void getOrdersForUserNotFound() {
-        // Mock the userRepository to return null when findByUsername is called with "test"
-        when(userRepository.findByUsername("test")).thenReturn(null);
+        // Mock the userRepository to return null when findIdByUsername is called with "test"
+        when(userRepository.findIdByUsername("test")).thenReturn(null);
 
         // Call the getOrdersForUser method with username "test"
-        final ResponseEntity<List<UserOrder>> response = orderController.getOrdersForUser("test");
+        final ResponseEntity<List<OrderView>> response = orderController.getOrdersForUser("test", null);
 
         // Assert that the response is not null and the status code is 404 (Not Found)
         assertNotNull(response);
         assertEquals(404, response.getStatusCodeValue());
     }
 
+    @Test
+    public void getOrdersForUserPage() {
+        // Create a User with a Cart and two orders
+        User user = createUserWithCart(new BigDecimal("2.99"));
+        List<UserOrder> userOrders = createUserOrders(user);
+        // Mock the repositories to return the user id and the first page of orders after cursor 0
+        when(userRepository.findIdByUsername("test")).thenReturn(0L);
+        when(orderRepository.findLineRows(0L, 0L, 2)).thenReturn(lineRows(userOrders));
+        when(orderRepository.findLineRows(0L, 1L, 2)).thenReturn(new ArrayList<>());
+
+        // A full page carries the id of its last order as cursor for the next page
+        final ResponseEntity<OrderHistoryPage> response = orderController.getOrdersForUserPage("test", 2, null, null);
+        assertNotNull(response);
+        assertEquals(200, response.getStatusCodeValue());
+        assertOrders(userOrders, response.getBody().getOrders());
+        assertEquals(Long.valueOf(1), response.getBody().getNextCursor());
+
+        // The page after the last order is empty and has no further cursor
+        final ResponseEntity<OrderHistoryPage> lastPage = orderController.getOrdersForUserPage("test", 2, 1L, null);
+        assertEquals(0, lastPage.getBody().getOrders().size());
+        assertNull(lastPage.getBody().getNextCursor());
+    }
+
+    @Test
+    public void getOrdersForUserPageNotFound() {
+        // Mock the userRepository to return null when findIdByUsername is called with "test"
+        when(userRepository.findIdByUsername("test")).thenReturn(null);
+
+        // Call the paginated history with username "test"
+        final ResponseEntity<OrderHistoryPage> response = orderController.getOrdersForUserPage("test", 10, null, null);
+
+        // Assert that the status code is 404 (Not Found)
+        assertNotNull(response);
+        assertEquals(404, response.getStatusCodeValue());
+    }
+
+    private User createUserWithCart(String username) {
+        User user = createUserWithCart(new BigDecimal("2.99"));
+        user.setUsername(username);
+        return user;
+    }
+
     private User createUserWithCart(BigDecimal itemPrice) {
         User user = new User();
         user.setUsername("test");
@@ -142,12 +323,10 @@ public class OrderControllerTest {
         item.setPrice(itemPrice);  // Set the item price
         item.setDescription("description");  // Set the item description
 
-        // Create a list of 3 items and add them to the cart
-        List<Item> itemsArray = new ArrayList<>();
-        for (int i = 0; i < 3; i++) {
-            itemsArray.add(item);  // Add the item to the list 3 times
-        }
-        cart.setItems(itemsArray);  // Set the cart's items
+        // Create a single line holding 3 units of the item and add it to the cart
+        List<CartLine> linesArray = new ArrayList<>();
+        linesArray.add(new CartLine(item.getId(), 3, item.getPrice()));
+        cart.setLines(linesArray);  // Set the cart's lines
         cart.setTotal(itemPrice.multiply(BigDecimal.valueOf(3)));  // Set the total price of the cart (itemPrice * 3)
 
         return user;  // Return the created user with the cart and items
@@ -162,4 +341,41 @@ public class OrderControllerTest {
         }
         return userOrders;  // Return the list of orders
     }
+
+    // Helper method to render order lines the way the responses do
+    private static List<LineView> lineViews(List<CartLine> lines) {
+        return lines.stream().map(LineView::of).collect(Collectors.toList());
+    }
+
+    // Helper method to return orders the way the order history query does: one row per order line
+    private static List<OrderLineRow> lineRows(List<UserOrder> orders) {
+        SpelAwareProxyProjectionFactory projections = new SpelAwareProxyProjectionFactory();
+        List<OrderLineRow> rows = new ArrayList<>();
+        for (UserOrder order : orders) {
+            for (CartLine line : order.getLines()) {
+                Map<String, Object> row = new HashMap<>();
+                row.put("orderId", order.getId());
+                row.put("totalCents", order.getTotalCents());
+                row.put("userId", order.getUser().getId());
+                row.put("username", order.getUser().getUsername());
+                row.put("itemId", line.getItemId());
+                row.put("quantity", line.getQuantity());
+                row.put("unitPriceCents", line.getUnitPriceCents());
+                rows.add(projections.createProjection(OrderLineRow.class, row));
+            }
+        }
+        return rows;
+    }
+
+    // Helper method to assert that the rendered orders match the given ones
+    private static void assertOrders(List<UserOrder> expected, List<OrderView> actual) {
+        assertNotNull(actual);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(lineViews(expected.get(i).getLines()), actual.get(i).getLines());
+            assertEquals(new UserRef(expected.get(i).getUser().getId(), expected.get(i).getUser().getUsername()), actual.get(i).getUser());
+            assertEquals(expected.get(i).getTotal(), actual.get(i).getTotal());
+        }
+    }
 }
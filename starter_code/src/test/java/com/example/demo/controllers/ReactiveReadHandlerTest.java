@@ -0,0 +1,179 @@
+package com.example.demo.controllers;
+
+// Import necessary classes for testing the reactive routes, mocking, and assertions
+import com.example.demo.ReactiveApiConfiguration;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.persistence.repositories.OrderLineRow;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.service.OrderHistoryService;
+import com.example.demo.service.ReactiveReadService;
+import com.example.demo.service.RequestMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.demo.util.Constant.MAX_PAGE_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReactiveReadHandlerTest {
+
+    private final ItemRepository itemRepository = mock(ItemRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ReactiveReadService reactiveReadService;
+    private WebTestClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        reactiveReadService = new ReactiveReadService(itemRepository, userRepository,
+                new OrderHistoryService(orderRepository), 1);
+        ReactiveReadHandler handler = new ReactiveReadHandler();
+        inject(handler, "reactiveReadService", reactiveReadService);
+        inject(handler, "requestMetrics", new RequestMetrics(meterRegistry));
+        client = WebTestClient.bindToRouterFunction(ReactiveApiConfiguration.routes(handler))
+                .handlerStrategies(ReactiveApiConfiguration.handlerStrategies(new ObjectMapper()))
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        reactiveReadService.destroy();
+    }
+
+    private static void inject(Object target, String fieldName, Object dependency) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, dependency);
+    }
+
+    // Helper method to create the items with ids from to to, inclusive
+    private static List<Item> items(long from, long to) {
+        List<Item> items = new ArrayList<>();
+        for (long id = from; id <= to; id++) {
+            Item item = new Item();
+            item.setId(id);
+            item.setName("Widget " + id);
+            item.setPrice(new BigDecimal("6.99"));
+            item.setDescription("A widget");
+            items.add(item);
+        }
+        return items;
+    }
+
+    // Helper method to create one order line row, as returned by OrderRepository.findLineRows
+    private static OrderLineRow lineRow(long orderId, long itemId) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("orderId", orderId);
+        row.put("totalCents", 699L);
+        row.put("userId", 1L);
+        row.put("username", "test");
+        row.put("itemId", itemId);
+        row.put("quantity", 1);
+        row.put("unitPriceCents", 699L);
+        return new SpelAwareProxyProjectionFactory().createProjection(OrderLineRow.class, row);
+    }
+
+    @Test
+    public void streamItemsPageByPage() {
+        when(itemRepository.findByIdGreaterThan(eq(0L), any(Pageable.class))).thenReturn(items(1, MAX_PAGE_SIZE));
+        when(itemRepository.findByIdGreaterThan(eq((long) MAX_PAGE_SIZE), any(Pageable.class)))
+                .thenReturn(items(MAX_PAGE_SIZE + 1, MAX_PAGE_SIZE + 1));
+
+        String body = client.get().uri("/rx/item").exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/x-ndjson")
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        String[] lines = body.split("\n");
+        assertEquals(MAX_PAGE_SIZE + 1, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":1,"));
+        assertTrue(lines[MAX_PAGE_SIZE].startsWith("{\"id\":" + (MAX_PAGE_SIZE + 1) + ","));
+        verify(itemRepository, times(2)).findByIdGreaterThan(any(), any(Pageable.class));
+    }
+
+    @Test
+    public void readAtMostOnePageAhead() throws Exception {
+        when(itemRepository.findByIdGreaterThan(eq(0L), any(Pageable.class))).thenReturn(items(1, MAX_PAGE_SIZE));
+        when(itemRepository.findByIdGreaterThan(eq((long) MAX_PAGE_SIZE), any(Pageable.class)))
+                .thenReturn(items(MAX_PAGE_SIZE + 1, 2 * MAX_PAGE_SIZE));
+        CountDownLatch received = new CountDownLatch(1);
+        BaseSubscriber<Item> subscriber = new BaseSubscriber<Item>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnNext(Item item) {
+                received.countDown();
+            }
+        };
+
+        reactiveReadService.items().subscribe(subscriber);
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        subscriber.dispose();
+
+        // One item was taken from the first page, so the second page may be read ahead but not the third
+        verify(itemRepository, never()).findByIdGreaterThan(eq((long) 2 * MAX_PAGE_SIZE), any(Pageable.class));
+    }
+
+    @Test
+    public void streamOrderHistory() {
+        when(userRepository.findIdByUsername("test")).thenReturn(1L);
+        when(orderRepository.findLineRows(1L, 0L, MAX_PAGE_SIZE))
+                .thenReturn(Arrays.asList(lineRow(1L, 1L), lineRow(1L, 2L), lineRow(2L, 1L)));
+
+        String body = client.get().uri("/rx/order/history/test").exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":1,"));
+        assertTrue(lines[0].contains("\"itemId\":2"));
+        assertTrue(lines[1].startsWith("{\"id\":2,"));
+    }
+
+    @Test
+    public void streamOrderHistoryUnknownUser() {
+        when(userRepository.findIdByUsername("nobody")).thenReturn(null);
+
+        client.get().uri("/rx/order/history/nobody").exchange()
+                .expectStatus().isNotFound();
+
+        verify(orderRepository, never()).findLineRows(anyLong(), anyLong(), anyInt());
+        assertEquals(1.0, meterRegistry.get(RequestMetrics.REJECTED_REQUESTS)
+                .tag("endpoint", "rx.order.history").counter().count(), 0.0);
+    }
+}
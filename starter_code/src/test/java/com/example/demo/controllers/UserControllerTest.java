@@ -3,28 +3,46 @@ package com.example.demo.controllers;
 // Importing necessary classes for unit testing and mock objects.
 import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.User;
-import com.example.demo.model.persistence.repositories.CartRepository;
+import com.example.demo.model.persistence.repositories.ItemRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
 import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.service.CoalescedLookups;
+import com.example.demo.service.HttpCaching;
+import com.example.demo.service.PasswordHashingService;
+import com.example.demo.service.RequestMetrics;
+import com.example.demo.service.UserCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.env.MockEnvironment;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class UserControllerTest {
 
-    // Declare the UserController to be tested, and mock dependencies for UserRepository, CartRepository, and BCryptPasswordEncoder.
+    // Declare the UserController to be tested, and mock dependencies for UserRepository and BCryptPasswordEncoder.
     private UserController userController;
     private final UserRepository userRepository = mock(UserRepository.class);  // Mocking UserRepository
-    private final CartRepository cartRepository = mock(CartRepository.class);  // Mocking CartRepository
     private final BCryptPasswordEncoder bCryptPasswordEncoder = mock(BCryptPasswordEncoder.class);  // Mocking BCryptPasswordEncoder
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();  // In-memory registry for the rejection counters
+    private final UserCache userCache = new UserCache(100, Duration.ofMinutes(5));  // Real cache, whose version drives the ETags
     
     @Before
     public void setUpMocked() {
@@ -32,8 +50,12 @@ public class UserControllerTest {
         userController = new UserController();
         // Inject the mocked dependencies into the UserController instance using reflection.
         injectDependenciesMocked(userController, "userRepository", userRepository);
-        injectDependenciesMocked(userController, "cartRepository", cartRepository);
-        injectDependenciesMocked(userController, "bCryptPasswordEncoder", bCryptPasswordEncoder);
+        injectDependenciesMocked(userController, "coalescedLookups", new CoalescedLookups(mock(ItemRepository.class), userRepository, Duration.ofSeconds(2)));
+        injectDependenciesMocked(userController, "passwordHashingService", new PasswordHashingService(bCryptPasswordEncoder, 1, 1));
+        injectDependenciesMocked(userController, "taskExecutor", new SimpleAsyncTaskExecutor("user-save-"));
+        injectDependenciesMocked(userController, "userCache", userCache);
+        injectDependenciesMocked(userController, "httpCaching", new HttpCaching(new MockEnvironment()));
+        injectDependenciesMocked(userController, "requestMetrics", new RequestMetrics(meterRegistry));
     }
     
     private static void injectDependenciesMocked(Object target, String fieldName, Object dependency) {
@@ -65,7 +87,7 @@ public class UserControllerTest {
         when(userRepository.findByUsername("username")).thenReturn(user);
 
         // Call the findByUserName method to retrieve the user.
-        final ResponseEntity<User> response = userController.findByUserName("username");
+        final ResponseEntity<User> response = userController.findByUserName("username", null);
 
         // Assert that the response is not null and the status code is 200 (OK).
         assertNotNull(response);
@@ -92,7 +114,7 @@ public class UserControllerTest {
         createUserRequest.setConfirmPassword("password");
 
         // Call the createUser method of the controller with the request.
-        final ResponseEntity<User> response = userController.createUser(createUserRequest);
+        final ResponseEntity<User> response = userController.createUser(createUserRequest).join();
 
         // Assert that the response is not null.
         assertNotNull(response);
@@ -107,6 +129,26 @@ public class UserControllerTest {
         assertEquals("hashed", user.getPassword());  // Assert that the password is hashed.
     }
 
+    @Test
+    public void createUserSavesOffTheHashingPool() {
+        // Record the thread the user is saved on
+        when(bCryptPasswordEncoder.encode("password")).thenReturn("hashed");
+        AtomicReference<String> savedOn = new AtomicReference<>();
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> {
+            savedOn.set(Thread.currentThread().getName());
+            return invocation.getArgument(0);
+        });
+
+        CreateUserRequest createUserRequest = new CreateUserRequest();
+        createUserRequest.setUsername("username");
+        createUserRequest.setPassword("password");
+        createUserRequest.setConfirmPassword("password");
+        assertEquals(200, userController.createUser(createUserRequest).join().getStatusCodeValue());
+
+        // The hashing pool only hashed; the save ran on the task executor
+        assertTrue(savedOn.get().startsWith("user-save-"));
+    }
+
     @Test
     public void createUserInvalidPasswordMocked() throws Exception {
         // Mock the BCryptPasswordEncoder to return a hashed password.
@@ -119,11 +161,37 @@ public class UserControllerTest {
         createUserRequest.setConfirmPassword("password1");
 
         // Call the createUser method and check the response.
-        final ResponseEntity<User> response = userController.createUser(createUserRequest);
+        final ResponseEntity<User> response = userController.createUser(createUserRequest).join();
 
         // Assert that the response is not null and the status code is 400 (Bad Request).
         assertNotNull(response);
         assertEquals(400, response.getStatusCodeValue());
+
+        // Assert that the rejection was counted as an invalid password.
+        assertEquals(1.0, meterRegistry.get(RequestMetrics.REJECTED_REQUESTS)
+                .tag("endpoint", "user.createUser").tag("reason", "invalid_password").counter().count(), 0.0);
+    }
+
+    @Test
+    public void createUserHashingSaturated() {
+        // Replace the hashing pool with one that rejects every submission, as a saturated pool does.
+        PasswordHashingService passwordHashingService = mock(PasswordHashingService.class);
+        when(passwordHashingService.encode("password")).thenThrow(new RejectedExecutionException());
+        injectDependenciesMocked(userController, "passwordHashingService", passwordHashingService);
+
+        // Create a CreateUserRequest with valid input values.
+        CreateUserRequest createUserRequest = new CreateUserRequest();
+        createUserRequest.setUsername("username");
+        createUserRequest.setPassword("password");
+        createUserRequest.setConfirmPassword("password");
+
+        // Call the createUser method and check the response.
+        final ResponseEntity<User> response = userController.createUser(createUserRequest).join();
+
+        // Assert that the request was shed with 503 (Service Unavailable) and never reached the user table.
+        assertNotNull(response);
+        assertEquals(503, response.getStatusCodeValue());
+        verify(userRepository, never()).save(any(User.class));
     }
 
     @Test
@@ -142,7 +210,7 @@ public class UserControllerTest {
         when(userRepository.findById(0L)).thenReturn(java.util.Optional.of(user));
 
         // Call the findById method to retrieve the user.
-        final ResponseEntity<User> response = userController.findById(0L);
+        final ResponseEntity<User> response = userController.findById(0L, null);
 
         // Assert that the response is not null and the status code is 200 (OK).
         assertNotNull(response);
@@ -156,4 +224,32 @@ public class UserControllerTest {
         assertEquals("password", actualUser.getPassword());  // Assert that the password matches.
         assertEquals(cart, actualUser.getCart());  // Assert that the cart matches.
     }
+
+    @Test
+    public void findByIdNotModified() {
+        // Mock the userRepository to return a user when findById is called with ID 0.
+        User user = new User();
+        user.setUsername("username");
+        when(userRepository.findById(0L)).thenReturn(java.util.Optional.of(user));
+
+        // The first call returns the user with its ETag and the default Cache-Control.
+        final ResponseEntity<User> response = userController.findById(0L, null);
+        assertEquals(200, response.getStatusCodeValue());
+        String etag = response.getHeaders().getETag();
+        assertNotNull(etag);
+        assertEquals(HttpCaching.DEFAULT_CACHE_CONTROL, response.getHeaders().getCacheControl());
+
+        // Asking again with that ETag answers 304 Not Modified without querying the repository.
+        final ResponseEntity<User> notModified = userController.findById(0L, etag);
+        assertEquals(304, notModified.getStatusCodeValue());
+        assertNull(notModified.getBody());
+        verify(userRepository, times(1)).findById(0L);
+
+        // The ETag of another id does not match, so that id is looked up (and not found).
+        assertEquals(404, userController.findById(1L, etag).getStatusCodeValue());
+
+        // Any write to the user table changes the ETag.
+        userCache.invalidate("someone");
+        assertEquals(200, userController.findById(0L, etag).getStatusCodeValue());
+    }
 }
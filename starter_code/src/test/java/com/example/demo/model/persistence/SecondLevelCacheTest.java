@@ -0,0 +1,118 @@
+package com.example.demo.model.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.persistence.repositories.UserRepository;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class SecondLevelCacheTest {
+
+	@Autowired
+	private ItemRepository itemRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private Statistics statistics;
+
+	private Item item;
+
+	private User user;
+
+	@Before
+	public void setUp() {
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		item = new Item();
+		item.setName("Cached Widget");
+		item.setPrice(new BigDecimal("1.50"));
+		item.setDescription("A widget that is cached");
+		item = itemRepository.save(item);
+		user = new User();
+		user.setUsername("cached-user");
+		user.setPassword("hash");
+		user = userRepository.save(user);
+		statistics.clear();
+	}
+
+	@After
+	public void tearDown() {
+		itemRepository.deleteById(item.getId());
+		userRepository.findById(user.getId()).ifPresent(userRepository::delete);
+	}
+
+	@Test
+	public void itemIsReadFromTheEntityCache() {
+		itemRepository.findById(item.getId());
+		long statements = statistics.getPrepareStatementCount();
+		assertEquals("Cached Widget", itemRepository.findById(item.getId()).get().getName());
+		assertEquals(statements, statistics.getPrepareStatementCount());
+		assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+	}
+
+	@Test
+	public void itemUpdateReplacesTheCachedItem() {
+		itemRepository.findById(item.getId());
+		item.setPrice(new BigDecimal("2.25"));
+		itemRepository.save(item);
+		statistics.clear();
+
+		assertEquals(225, itemRepository.findById(item.getId()).get().getPriceCents());
+		assertEquals(0, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	public void itemWriteInvalidatesCachedQueries() {
+		itemRepository.findByName("Cached Widget");
+		assertEquals(1, itemRepository.findByName("Cached Widget").size());
+		assertEquals(1, statistics.getQueryCacheHitCount());
+
+		Item other = new Item();
+		other.setName("Cached Widget");
+		other.setPrice(BigDecimal.ONE);
+		other.setDescription("Another widget that is cached");
+		other = itemRepository.save(other);
+		try {
+			assertEquals(2, itemRepository.findByName("Cached Widget").size());
+			assertEquals(1, statistics.getQueryCacheHitCount());
+		} finally {
+			itemRepository.deleteById(other.getId());
+		}
+	}
+
+	@Test
+	public void usernameIsResolvedFromTheNaturalIdCache() {
+		userRepository.findByUsername("cached-user");
+		long statements = statistics.getPrepareStatementCount();
+		assertEquals(user.getId(), userRepository.findByUsername("cached-user").getId());
+		assertEquals(statements, statistics.getPrepareStatementCount());
+		assertTrue(statistics.getNaturalIdCacheHitCount() > 0);
+	}
+
+	@Test
+	public void deletedUserIsNoLongerFound() {
+		userRepository.findByUsername("cached-user");
+		userRepository.deleteById(user.getId());
+		assertNull(userRepository.findByUsername("cached-user"));
+	}
+}
@@ -0,0 +1,105 @@
+package com.example.demo.security;
+
+// Import necessary classes for mock servlet requests, mocking, testing and assertions
+import com.example.demo.service.JsonMapping;
+import com.example.demo.service.PasswordHashingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.demo.util.Constant.HEADER_STRING;
+import static com.example.demo.util.Constant.SIGN_IN_URL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class JWTAuthenticationFilterTest {
+
+    private final AuthenticationManager authenticationManager = mock(AuthenticationManager.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();  // In-memory registry for the login timers
+
+    private PasswordHashingService passwordHashingService;
+    private JWTAuthenticationFilter filter;
+
+    @Before
+    public void setUp() {
+        passwordHashingService = new PasswordHashingService(new BCryptPasswordEncoder(4), 1, 1);
+        filter = new JWTAuthenticationFilter(authenticationManager, passwordHashingService,
+                new JsonMapping(new ObjectMapper()), meterRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        passwordHashingService.destroy();
+    }
+
+    // Helper method to send one login and wait for its asynchronous response to complete
+    private MockHttpServletResponse login(String body) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", SIGN_IN_URL);
+        request.setAsyncSupported(true);
+        request.setContent(body.getBytes());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertNull(filter.attemptAuthentication(request, response));
+
+        // MockAsyncContext.complete() clears the async started flag of the request
+        for (int i = 0; i < 500 && request.isAsyncStarted(); i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        return response;
+    }
+
+    private Timer timer(String name, String outcome) {
+        return meterRegistry.find(name).tag("outcome", outcome).timer();
+    }
+
+    @Test
+    public void successfulLoginIsTimed() throws Exception {
+        User principal = new User("alice", "hash", Collections.emptyList());
+        Authentication auth = new UsernamePasswordAuthenticationToken(principal, null, Collections.emptyList());
+        when(authenticationManager.authenticate(any())).thenReturn(auth);
+
+        MockHttpServletResponse response = login("{\"username\":\"alice\",\"password\":\"password1\"}");
+
+        assertEquals(200, response.getStatus());
+        assertNotNull(response.getHeader(HEADER_STRING));
+        assertEquals(1, timer(JWTAuthenticationFilter.LOGIN_REQUESTS, "success").count());
+        assertEquals(1, timer(JWTAuthenticationFilter.LOGIN_HASHING, "success").count());
+    }
+
+    @Test
+    public void badCredentialsAreTimed() throws Exception {
+        when(authenticationManager.authenticate(any())).thenThrow(new BadCredentialsException("bad"));
+
+        MockHttpServletResponse response = login("{\"username\":\"alice\",\"password\":\"wrong\"}");
+
+        assertEquals(401, response.getStatus());
+        assertEquals(1, timer(JWTAuthenticationFilter.LOGIN_REQUESTS, "bad_credentials").count());
+        assertEquals(1, timer(JWTAuthenticationFilter.LOGIN_HASHING, "bad_credentials").count());
+    }
+
+    @Test
+    public void malformedLoginIsTimedWithoutHashing() throws Exception {
+        MockHttpServletResponse response = login("not json");
+
+        assertEquals(400, response.getStatus());
+        assertEquals(1, timer(JWTAuthenticationFilter.LOGIN_REQUESTS, "malformed").count());
+        assertNull(meterRegistry.find(JWTAuthenticationFilter.LOGIN_HASHING).timer());
+    }
+}
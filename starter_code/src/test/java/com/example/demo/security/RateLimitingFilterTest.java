@@ -0,0 +1,192 @@
+package com.example.demo.security;
+
+// Import necessary classes for creating tokens, mock servlet requests, testing and assertions
+import com.auth0.jwt.JWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+import static com.example.demo.util.Constant.HEADER_STRING;
+import static com.example.demo.util.Constant.SECRET;
+import static com.example.demo.util.Constant.SIGN_IN_URL;
+import static com.example.demo.util.Constant.TOKEN_PREFIX;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimitingFilterTest {
+
+    // Clock of the buckets, moved by the tests
+    private final AtomicLong now = new AtomicLong();
+
+    private RequestRateLimiter rateLimiter;
+    private RateLimitingFilter filter;
+
+    @Before
+    public void setUp() {
+        // 10 per second with a burst of 3 for users, 100 per second per address, 1 login per second with a burst of 2
+        rateLimiter = new RequestRateLimiter(true,
+                new RequestRateLimiter.Limit("user", 10, 3, 100, now::get),
+                new RequestRateLimiter.Limit("address", 100, 100, 100, now::get),
+                new RequestRateLimiter.Limit("login", 1, 2, 100, now::get), 2);
+        filter = new RateLimitingFilter(rateLimiter, new VerifiedTokenCache(100), request -> false);
+    }
+
+    // Helper method to sign a token the same way JWTAuthenticationFilter does
+    private static String createToken(String subject) {
+        return TOKEN_PREFIX + JWT.create()
+                .withSubject(subject)
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(HMAC512(SECRET.getBytes()));
+    }
+
+    // Helper method to run one request through the filter; the chain records whether it was reached
+    private MockHttpServletResponse send(MockHttpServletRequest request, MockFilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request) throws Exception {
+        return send(request, new MockFilterChain());
+    }
+
+    private static MockHttpServletRequest get(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/item");
+        request.setServletPath("/api/item");
+        request.addHeader(HEADER_STRING, token);
+        return request;
+    }
+
+    @Test
+    public void limitUserToBurstThenRefill() throws Exception {
+        String token = createToken("test");
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, send(get(token)).getStatus());
+        }
+
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse limited = send(get(token), chain);
+        assertEquals(429, limited.getStatus());
+        assertEquals("1", limited.getHeader("Retry-After"));
+        assertNull(chain.getRequest());
+
+        // One token comes back every 100 ms
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(200, send(get(token)).getStatus());
+        assertEquals(429, send(get(token)).getStatus());
+    }
+
+    @Test
+    public void limitEachUserSeparately() throws Exception {
+        String first = createToken("first");
+        for (int i = 0; i < 3; i++) {
+            send(get(first));
+        }
+        assertEquals(429, send(get(first)).getStatus());
+        assertEquals(200, send(get(createToken("second"))).getStatus());
+    }
+
+    @Test
+    public void limitLoginPerAddress() throws Exception {
+        MockHttpServletRequest login = new MockHttpServletRequest("POST", SIGN_IN_URL);
+        login.setServletPath(SIGN_IN_URL);
+        assertEquals(200, send(login).getStatus());
+        assertEquals(200, send(login).getStatus());
+
+        MockHttpServletResponse limited = send(login);
+        assertEquals(429, limited.getStatus());
+        assertEquals("1", limited.getHeader("Retry-After"));
+
+        // Other endpoints of the same address are not affected, nor is another address
+        assertEquals(200, send(get("none")).getStatus());
+        login.setRemoteAddr("10.0.0.2");
+        assertEquals(200, send(login).getStatus());
+    }
+
+    @Test
+    public void passInvalidTokenOn() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        assertEquals(200, send(get(TOKEN_PREFIX + "not-a-token"), chain).getStatus());
+        assertNotNull(chain.getRequest());
+    }
+
+    @Test
+    public void shedLoadAboveMaxInFlight() throws Exception {
+        assertTrue(rateLimiter.enter());
+        assertTrue(rateLimiter.enter());
+
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse shed = send(get("none"), chain);
+        assertEquals(503, shed.getStatus());
+        assertEquals("1", shed.getHeader("Retry-After"));
+        assertNull(chain.getRequest());
+
+        rateLimiter.exit();
+        assertEquals(200, send(get("none")).getStatus());
+        // The filter released its own slot when the request left it
+        assertEquals(1, rateLimiter.inFlight());
+    }
+
+    @Test
+    public void countAsyncRequestsUntilComplete() throws Exception {
+        MockHttpServletRequest login = new MockHttpServletRequest("POST", SIGN_IN_URL);
+        login.setServletPath(SIGN_IN_URL);
+        login.setAsyncSupported(true);
+        // The chain hands the request over to another thread, as the login filter does for BCrypt
+        filter.doFilter(login, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+
+        // The request thread has left, the request is still in flight and takes one of the two slots
+        assertEquals(1, rateLimiter.inFlight());
+        assertTrue(rateLimiter.enter());
+        assertEquals(503, send(get("none")).getStatus());
+        rateLimiter.exit();
+
+        login.getAsyncContext().complete();
+        assertEquals(0, rateLimiter.inFlight());
+    }
+
+    @Test
+    public void deriveMaxInFlightFromTheServerLimit() {
+        // 3/4 of Tomcat's request threads, or of its connections when requests run on virtual threads
+        assertEquals(150, RequestRateLimiter.defaultMaxInFlight(false, 200, 10_000));
+        assertEquals(7_500, RequestRateLimiter.defaultMaxInFlight(true, 200, 10_000));
+    }
+
+    @Test
+    public void boundBucketsPerLimit() throws Exception {
+        RequestRateLimiter.Limit limit = new RequestRateLimiter.Limit("address", 1, 1, 10, now::get);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, limit.acquire("10.0.0." + i));
+        }
+        // Eviction runs in the background, shortly after the writes
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (limit.size() > 10 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(limit.size() <= 10);
+    }
+
+    @Test
+    public void countLimitedRequests() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        rateLimiter.bindTo(registry);
+        String token = createToken("test");
+        for (int i = 0; i < 5; i++) {
+            send(get(token));
+        }
+
+        assertEquals(2.0, registry.get(RequestRateLimiter.LIMITED_REQUESTS).tag("reason", "user")
+                .functionCounter().count(), 0.0);
+        assertEquals(0.0, registry.get(RequestRateLimiter.IN_FLIGHT_REQUESTS).gauge().value(), 0.0);
+    }
+}
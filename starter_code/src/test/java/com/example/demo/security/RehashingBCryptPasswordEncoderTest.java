@@ -0,0 +1,30 @@
+package com.example.demo.security;
+
+// Import necessary classes for testing and assertions
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RehashingBCryptPasswordEncoderTest {
+
+    @Test
+    public void upgradeEncodingWhenStrengthChanges() {
+        // Hash with the old strength, then check it against an encoder configured with a new one
+        String oldHash = new RehashingBCryptPasswordEncoder(4).encode("password");
+        RehashingBCryptPasswordEncoder encoder = new RehashingBCryptPasswordEncoder(5);
+
+        // The old hash still matches, but must be re-encoded
+        assertTrue(encoder.matches("password", oldHash));
+        assertTrue(encoder.upgradeEncoding(oldHash));
+    }
+
+    @Test
+    public void noUpgradeForCurrentStrength() {
+        RehashingBCryptPasswordEncoder encoder = new RehashingBCryptPasswordEncoder(4);
+
+        assertFalse(encoder.upgradeEncoding(encoder.encode("password")));
+        assertFalse(encoder.upgradeEncoding("not a bcrypt hash"));
+        assertFalse(encoder.upgradeEncoding(null));
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.demo.security;
+
+// Import necessary classes for creating tokens, testing and assertions
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+import static com.example.demo.util.Constant.CART_ID_CLAIM;
+import static com.example.demo.util.Constant.SECRET;
+import static com.example.demo.util.Constant.USER_ID_CLAIM;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class VerifiedTokenCacheTest {
+
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Before
+    public void setUp() {
+        // Small cache so the test stays independent from the configured size
+        verifiedTokenCache = new VerifiedTokenCache(100);
+    }
+
+    // Helper method to sign a token the same way JWTAuthenticationFilter does
+    private static String createToken(String subject, long expiresInMillis) {
+        return JWT.create()
+                .withSubject(subject)
+                .withExpiresAt(new Date(System.currentTimeMillis() + expiresInMillis))
+                .sign(HMAC512(SECRET.getBytes()));
+    }
+
+    @Test
+    public void verifyCachesSubject() {
+        String token = createToken("test", 60_000);
+
+        // The first call verifies the signature, the second one is answered from the cache
+        assertEquals("test", verifiedTokenCache.verify(token).getSubject());
+        assertEquals("test", verifiedTokenCache.verify(token).getSubject());
+
+        assertEquals(1, verifiedTokenCache.stats().missCount());
+        assertTrue(verifiedTokenCache.hitRate() > 0);
+    }
+
+    @Test
+    public void verifyReadsIdClaims() {
+        String token = JWT.create()
+                .withSubject("test")
+                .withClaim(USER_ID_CLAIM, 3L)
+                .withClaim(CART_ID_CLAIM, 4L)
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(HMAC512(SECRET.getBytes()));
+
+        VerifiedTokenCache.VerifiedToken verified = verifiedTokenCache.verify(token);
+        assertEquals(Long.valueOf(3L), verified.getUserId());
+        assertEquals(Long.valueOf(4L), verified.getCartId());
+
+        // Tokens issued without the claims still verify, without ids
+        assertNull(verifiedTokenCache.verify(createToken("test", 60_000)).getUserId());
+    }
+
+    @Test(expected = JWTVerificationException.class)
+    public void verifyRejectsExpiredToken() {
+        // Expired tokens must fail verification and never be served from the cache
+        verifiedTokenCache.verify(createToken("test", -1_000));
+    }
+
+    @Test(expected = JWTVerificationException.class)
+    public void verifyRejectsForgedToken() {
+        String forged = JWT.create()
+                .withSubject("test")
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(HMAC512("anotherSecret".getBytes()));
+
+        verifiedTokenCache.verify(forged);
+    }
+}
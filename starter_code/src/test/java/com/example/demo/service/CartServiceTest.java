@@ -0,0 +1,102 @@
+package com.example.demo.service;
+
+// Import necessary classes for testing, mocking and assertions
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CartServiceTest {
+
+    private final CartRepository cartRepository = mock(CartRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CartService cartService;
+    private Item item;
+
+    @Before
+    public void setUp() {
+        when(cartRepository.save(any(Cart.class))).thenAnswer(returnsFirstArg());
+        // Three attempts without backoff, so the tests do not sleep
+        cartService = new CartService(cartRepository, transactionManager, meterRegistry, 3, 0);
+
+        item = new Item();
+        item.setId(1L);
+        item.setName("testItem");
+        item.setPrice(new BigDecimal("2.99"));
+    }
+
+    // Helper method to create a cart as it is stored in the database
+    private static Cart storedCart() {
+        Cart cart = new Cart();
+        cart.setId(1L);
+        return cart;
+    }
+
+    // A commit that fails the version check, as when another request saved the same cart first
+    private static ObjectOptimisticLockingFailureException conflict() {
+        return new ObjectOptimisticLockingFailureException(Cart.class, 1L);
+    }
+
+    @Test
+    public void updateRetriesOnFreshCart() {
+        Cart stale = storedCart();
+        Cart fresh = storedCart();
+        fresh.addItem(item, 2);  // The concurrent request's change, already committed
+
+        doThrow(conflict()).doNothing().when(transactionManager).commit(any());
+        when(cartRepository.findById(1L)).thenReturn(Optional.of(fresh));
+
+        Cart updated = cartService.update(stale, cart -> cart.addItem(item, 1));
+
+        // Both updates survive: the retry replayed the mutation on the cart that won the race
+        assertNotSame(stale, updated);
+        assertEquals(3, updated.getLines().get(0).getQuantity());
+        assertEquals(new BigDecimal("8.97"), updated.getTotal());
+        assertEquals(1.0, meterRegistry.get(CartService.CART_CONTENTION).tag("outcome", "retried").counter().count(), 0.0);
+    }
+
+    @Test
+    public void updateGivesUpAfterMaxAttempts() {
+        doThrow(conflict()).when(transactionManager).commit(any());
+        when(cartRepository.findById(1L)).thenAnswer(invocation -> Optional.of(storedCart()));
+
+        try {
+            cartService.update(storedCart(), cart -> cart.addItem(item, 1));
+            fail("Expected the conflict to be rethrown");
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // Two retries, then the third conflict is reported to the caller
+            assertEquals(2.0, meterRegistry.get(CartService.CART_CONTENTION).tag("outcome", "retried").counter().count(), 0.0);
+            assertEquals(1.0, meterRegistry.get(CartService.CART_CONTENTION).tag("outcome", "exhausted").counter().count(), 0.0);
+        }
+    }
+
+    @Test
+    public void updateWithoutConflict() {
+        doNothing().when(transactionManager).commit(any());
+        Cart cart = storedCart();
+
+        Cart updated = cartService.update(cart, c -> c.addItem(item, 2));
+
+        assertEquals(cart, updated);
+        assertEquals(new BigDecimal("5.98"), updated.getTotal());
+        assertEquals(0.0, meterRegistry.get(CartService.CART_CONTENTION).tag("outcome", "retried").counter().count(), 0.0);
+    }
+}
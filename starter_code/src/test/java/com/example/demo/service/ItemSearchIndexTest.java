@@ -0,0 +1,114 @@
+package com.example.demo.service;
+
+// Import necessary classes for testing, mocking and assertions
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ItemSearchIndexTest {
+
+    private final ItemRepository itemRepository = mock(ItemRepository.class);
+    private ItemSearchIndex itemSearchIndex;
+
+    @Before
+    public void setUp() {
+        when(itemRepository.findAll()).thenReturn(Arrays.asList(
+                item(1L, "Round Widget", "A widget that is round"),
+                item(2L, "Square Widget", "A widget that is square"),
+                item(3L, "Square Table", "Seats four, fits a round widget")));
+        itemSearchIndex = new ItemSearchIndex(itemRepository);
+    }
+
+    // Helper method to create an item as it is stored in the database
+    private static Item item(Long id, String name, String description) {
+        Item item = new Item();
+        item.setId(id);
+        item.setName(name);
+        item.setPrice(new BigDecimal("6.99"));
+        item.setDescription(description);
+        return item;
+    }
+
+    private List<Long> search(String query, int limit) {
+        return itemSearchIndex.search(query, limit).stream().map(Item::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void tokenize() {
+        assertEquals(Arrays.asList("round", "widget", "v2", "größe"), ItemSearchIndex.tokenize(" Round-WIDGET, v2 (Größe)"));
+        assertTrue(ItemSearchIndex.tokenize("--").isEmpty());
+    }
+
+    @Test
+    public void searchRanksNameMatchesFirst() {
+        // All three mention "widget", the two naming it rank above the one describing it
+        assertEquals(Arrays.asList(1L, 2L, 3L), search("widget", 10));
+        // "table" only appears in the name of item 3
+        assertEquals(Collections.singletonList(3L), search("TABLE", 10));
+    }
+
+    @Test
+    public void searchRequiresEveryTerm() {
+        assertEquals(Arrays.asList(2L, 3L), search("square", 10));
+        // Item 3 has "square" in its name and "widget" in its description, so it ranks below item 2
+        assertEquals(Arrays.asList(2L, 3L), search("square widget", 10));
+        assertEquals(Collections.singletonList(3L), search("square round table", 10));
+        assertTrue(search("square chair", 10).isEmpty());
+    }
+
+    @Test
+    public void searchMatchesPrefixes() {
+        // "squ" and "wid" only match as prefixes
+        assertEquals(Arrays.asList(2L, 3L), search("wid squ", 10));
+        // An exact term outranks a longer term it is a prefix of: "seat" is a prefix of "seats" only
+        assertEquals(Collections.singletonList(3L), search("seat", 10));
+    }
+
+    @Test
+    public void searchHonoursLimit() {
+        assertEquals(Arrays.asList(1L, 2L), search("widget", 2));
+        assertTrue(search("widget", 0).isEmpty());
+    }
+
+    @Test
+    public void updatesAreIncremental() {
+        assertEquals(Arrays.asList(2L, 3L), search("square", 10));
+
+        // Renaming, adding and removing items changes the results without reloading the catalog
+        itemSearchIndex.update(item(2L, "Oval Widget", "A widget that is oval"));
+        itemSearchIndex.update(item(4L, "Square Lamp", "A lamp that is square"));
+        itemSearchIndex.remove(3L);
+
+        assertEquals(Collections.singletonList(4L), search("square", 10));
+        assertEquals(Collections.singletonList(2L), search("oval", 10));
+        assertTrue(search("table", 10).isEmpty());
+        assertEquals(3, itemSearchIndex.size());
+        verify(itemRepository, times(1)).findAll();
+    }
+
+    @Test
+    public void resetRebuildsFromTheItemTable() {
+        assertEquals(Arrays.asList(2L, 3L), search("square", 10));
+
+        // Items written behind the index's back show up once it is reset
+        when(itemRepository.findAll()).thenReturn(Collections.singletonList(item(4L, "Square Lamp", "A lamp")));
+        itemSearchIndex.reset();
+        assertEquals(Collections.singletonList(4L), search("square", 10));
+        assertEquals(1, itemSearchIndex.size());
+        verify(itemRepository, times(2)).findAll();
+    }
+}
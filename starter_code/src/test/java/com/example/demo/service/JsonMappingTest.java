@@ -0,0 +1,63 @@
+package com.example.demo.service;
+
+// Import necessary classes for parsing login bodies, testing and assertions
+import com.example.demo.model.requests.LoginRequest;
+import com.example.demo.model.responses.OrderView;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class JsonMappingTest {
+
+    private final JsonMapping jsonMapping = new JsonMapping(new ObjectMapper());
+
+    // Helper method to read a login body given as a string
+    private LoginRequest read(String body) throws IOException {
+        return jsonMapping.readLoginRequest(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void readLoginRequest() throws IOException {
+        LoginRequest login = read("{\"username\":\"test\",\"password\":\"testPassword\"}");
+        assertEquals("test", login.getUsername());
+        assertEquals("testPassword", login.getPassword());
+    }
+
+    @Test
+    public void skipOtherFields() throws IOException {
+        LoginRequest login = read("{\"id\":1,\"cart\":{\"items\":[1,2]},\"password\":\"testPassword\",\"username\":\"test\"}");
+        assertEquals("test", login.getUsername());
+        assertEquals("testPassword", login.getPassword());
+
+        // Missing or null fields stay null
+        assertNull(read("{\"username\":null}").getUsername());
+        assertNull(read("{}").getPassword());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectTruncatedBody() throws IOException {
+        read("{\"username\":\"test\",\"password\":");
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectNonObjectBody() throws IOException {
+        read("[\"test\",\"testPassword\"]");
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectStructuredCredentials() throws IOException {
+        read("{\"username\":{\"name\":\"test\"},\"password\":\"testPassword\"}");
+    }
+
+    @Test
+    public void reuseWriters() {
+        assertSame(jsonMapping.writerFor(OrderView.class), jsonMapping.writerFor(OrderView.class));
+    }
+}
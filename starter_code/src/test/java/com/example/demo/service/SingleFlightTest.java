@@ -0,0 +1,151 @@
+package com.example.demo.service;
+
+// Import necessary classes for running concurrent callers, testing and assertions
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    // Number of times the underlying call ran
+    private final AtomicInteger calls = new AtomicInteger();
+
+    // The first call blocks on this latch until the test releases it
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+    }
+
+    // Helper method for a call that blocks on the first invocation, then returns or throws the given outcome
+    private Function<String, String> blockingCall(RuntimeException failure) {
+        return key -> {
+            if (calls.incrementAndGet() == 1) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+            return "value of " + key + " #" + calls.get();
+        };
+    }
+
+    // Helper method to start the first call and waiters for the same key, returning once all of them are waiting
+    private List<Future<String>> startCallers(SingleFlight<String, String> flight, Function<String, String> load,
+                                              int waiters) throws Exception {
+        List<Future<String>> results = new ArrayList<>();
+        results.add(callers.submit(() -> flight.call("popular", load)));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        List<Thread> waiting = new ArrayList<>();
+        CountDownLatch started = new CountDownLatch(waiters);
+        for (int i = 0; i < waiters; i++) {
+            results.add(callers.submit(() -> {
+                synchronized (waiting) {
+                    waiting.add(Thread.currentThread());
+                }
+                started.countDown();
+                return flight.call("popular", load);
+            }));
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        synchronized (waiting) {
+            for (Thread thread : waiting) {
+                while (thread.getState() != Thread.State.TIMED_WAITING && System.nanoTime() < deadline) {
+                    Thread.sleep(1);
+                }
+            }
+        }
+        return results;
+    }
+
+    @Test
+    public void shareOneCallBetweenConcurrentCallers() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(Duration.ofSeconds(5));
+        List<Future<String>> results = startCallers(flight, blockingCall(null), 4);
+
+        release.countDown();
+        for (Future<String> result : results) {
+            assertEquals("value of popular #1", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, calls.get());
+        assertEquals(4, flight.sharedCount());
+
+        // Nothing is kept: the next caller runs a fresh call
+        assertEquals("value of popular #2", flight.call("popular", blockingCall(null)));
+    }
+
+    @Test
+    public void shareFailureWithoutKeepingIt() throws Exception {
+        IllegalStateException failure = new IllegalStateException("database down");
+        SingleFlight<String, String> flight = new SingleFlight<>(Duration.ofSeconds(5));
+        List<Future<String>> results = startCallers(flight, blockingCall(failure), 2);
+
+        release.countDown();
+        for (Future<String> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail("The failure of the shared call should reach every caller");
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+        }
+        assertEquals(1, calls.get());
+        assertEquals("value of popular #2", flight.call("popular", blockingCall(null)));
+    }
+
+    @Test
+    public void runOwnCallAfterWaitTimeout() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(Duration.ofMillis(50));
+        Function<String, String> load = blockingCall(null);
+        Future<String> first = callers.submit(() -> flight.call("popular", load));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        // The first call is still blocked, so this caller gives up waiting and runs its own
+        assertEquals("value of popular #2", flight.call("popular", load));
+        assertEquals(1, flight.timedOutCount());
+
+        release.countDown();
+        assertEquals("value of popular #2", first.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void runDifferentKeysSeparately() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(Duration.ofSeconds(5));
+        Function<String, String> load = blockingCall(null);
+        Future<String> first = callers.submit(() -> flight.call("popular", load));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        assertEquals("value of other #2", flight.call("other", load));
+        assertEquals(0, flight.sharedCount());
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+    }
+}